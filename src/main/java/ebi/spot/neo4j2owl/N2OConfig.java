@@ -1,6 +1,8 @@
 package ebi.spot.neo4j2owl;
 
 import ebi.spot.neo4j2owl.importer.LABELLING_MODE;
+import ebi.spot.neo4j2owl.importer.LOADING_STRATEGY;
+import ebi.spot.neo4j2owl.importer.PREFLIGHT_POLICY;
 import org.apache.commons.io.FileUtils;
 import org.semanticweb.owlapi.model.IRI;
 import org.semanticweb.owlapi.model.OWLAnnotationProperty;
@@ -19,6 +21,24 @@ public class N2OConfig {
     private boolean allow_entities_without_labels = true;
     private boolean addPropertyLabel = true;
     private boolean testmode = false;
+    private boolean streamABox = false;
+    private int extractionThreads = 1;
+    private int loadThreads = 1;
+    private int relationshipPartitions = 1;
+    private String taxonomyCacheDir = null;
+    private String deltaManifest = null;
+    private boolean compressCSV = false;
+    private int csvShardSize = 0;
+    private boolean neo4jAdminImport = false;
+    private boolean surrogateKeys = false;
+    private boolean multiLabelNodes = false;
+    private boolean uniqueIri = false;
+    private boolean resume = false;
+    private final List<String> indexes = new ArrayList<>();
+    private long indexTimeoutInSeconds = 600;
+    private PREFLIGHT_POLICY preflightPolicy = PREFLIGHT_POLICY.OFF;
+    private long preflightMinRows = 1000;
+    private LOADING_STRATEGY loadingStrategy = LOADING_STRATEGY.LOAD_CSV;
     private LABELLING_MODE LABELLINGMODE = LABELLING_MODE.SL_LOSE;
     private long timeoutinminutes = 180;
     private double relationTypeThreshold = 0.95;
@@ -92,6 +112,172 @@ public class N2OConfig {
         this.testmode = testmode;
     }
 
+    public boolean isStreamABox() {
+        return streamABox;
+    }
+
+    private void setStreamABox(boolean streamABox) {
+        this.streamABox = streamABox;
+    }
+
+    public int getExtractionThreads() {
+        return extractionThreads;
+    }
+
+    private void setExtractionThreads(int extractionThreads) {
+        this.extractionThreads = Math.max(1, extractionThreads);
+    }
+
+    public int getLoadThreads() {
+        return loadThreads;
+    }
+
+    private void setLoadThreads(int loadThreads) {
+        this.loadThreads = Math.max(1, loadThreads);
+    }
+
+    public int getRelationshipPartitions() {
+        return relationshipPartitions;
+    }
+
+    private void setRelationshipPartitions(int relationshipPartitions) {
+        this.relationshipPartitions = Math.max(1, relationshipPartitions);
+    }
+
+    public Optional<String> getTaxonomyCacheDir() {
+        return Optional.ofNullable(taxonomyCacheDir);
+    }
+
+    private void setTaxonomyCacheDir(String taxonomyCacheDir) {
+        this.taxonomyCacheDir = taxonomyCacheDir;
+    }
+
+    public Optional<String> getDeltaManifest() {
+        return Optional.ofNullable(deltaManifest);
+    }
+
+    private void setDeltaManifest(String deltaManifest) {
+        this.deltaManifest = deltaManifest;
+    }
+
+    public boolean isCompressCSV() {
+        return compressCSV;
+    }
+
+    private void setCompressCSV(boolean compressCSV) {
+        this.compressCSV = compressCSV;
+    }
+
+    public int getCSVShardSize() {
+        return csvShardSize;
+    }
+
+    private void setCSVShardSize(int csvShardSize) {
+        this.csvShardSize = Math.max(0, csvShardSize);
+    }
+
+    public boolean isNeo4jAdminImport() {
+        return neo4jAdminImport;
+    }
+
+    private void setNeo4jAdminImport(boolean neo4jAdminImport) {
+        this.neo4jAdminImport = neo4jAdminImport;
+    }
+
+    public boolean isSurrogateKeys() {
+        return surrogateKeys;
+    }
+
+    private void setSurrogateKeys(boolean surrogateKeys) {
+        this.surrogateKeys = surrogateKeys;
+    }
+
+    public boolean isUniqueIri() {
+        return uniqueIri;
+    }
+
+    private void setUniqueIri(boolean uniqueIri) {
+        this.uniqueIri = uniqueIri;
+    }
+
+    public boolean isResume() {
+        return resume;
+    }
+
+    private void setResume(boolean resume) {
+        this.resume = resume;
+    }
+
+    public List<String> getIndexes() {
+        return new ArrayList<>(indexes);
+    }
+
+    public long getIndexTimeoutInSeconds() {
+        return indexTimeoutInSeconds;
+    }
+
+    private void setIndexTimeoutInSeconds(long indexTimeoutInSeconds) {
+        this.indexTimeoutInSeconds = indexTimeoutInSeconds;
+    }
+
+    public PREFLIGHT_POLICY getPreflightPolicy() {
+        return preflightPolicy;
+    }
+
+    private void setPreflightPolicy(String policy) {
+        switch (policy) {
+            case "off":
+                preflightPolicy = PREFLIGHT_POLICY.OFF;
+                break;
+            case "warn":
+                preflightPolicy = PREFLIGHT_POLICY.WARN;
+                break;
+            case "fail":
+                preflightPolicy = PREFLIGHT_POLICY.FAIL;
+                break;
+            default:
+                log.warning("CONFIG: " + policy + " not a valid preflight policy, keeping default");
+                break;
+        }
+    }
+
+    public long getPreflightMinRows() {
+        return preflightMinRows;
+    }
+
+    private void setPreflightMinRows(long preflightMinRows) {
+        this.preflightMinRows = preflightMinRows;
+    }
+
+    public boolean isMultiLabelNodes() {
+        return multiLabelNodes;
+    }
+
+    private void setMultiLabelNodes(boolean multiLabelNodes) {
+        this.multiLabelNodes = multiLabelNodes;
+    }
+
+    public LOADING_STRATEGY getLoadingStrategy() {
+        return loadingStrategy;
+    }
+
+    private void setLoadingStrategy(String strategy) {
+        switch (strategy) {
+            case "load_csv":
+                loadingStrategy = LOADING_STRATEGY.LOAD_CSV;
+                break;
+            case "unwind":
+                loadingStrategy = LOADING_STRATEGY.UNWIND;
+                break;
+            case "core_api":
+                loadingStrategy = LOADING_STRATEGY.CORE_API;
+                break;
+            default:
+                log.warning("CONFIG: " + strategy + " not a valid loading_strategy, keeping default");
+                break;
+        }
+    }
+
     private void setSafeLabelMode(String sl_mode) {
         switch (sl_mode) {
             case "strict":
@@ -266,6 +452,114 @@ public class N2OConfig {
             }
         }
 
+        if (configs.containsKey("stream_abox")) {
+            if (configs.get("stream_abox") instanceof Boolean) {
+                N2OConfig.getInstance().setStreamABox((Boolean) configs.get("stream_abox"));
+            }
+        }
+
+        if (configs.containsKey("extraction_threads")) {
+            if (configs.get("extraction_threads") instanceof Integer) {
+                N2OConfig.getInstance().setExtractionThreads((Integer) configs.get("extraction_threads"));
+            }
+        }
+
+        if (configs.containsKey("load_threads")) {
+            if (configs.get("load_threads") instanceof Integer) {
+                N2OConfig.getInstance().setLoadThreads((Integer) configs.get("load_threads"));
+            }
+        }
+
+        if (configs.containsKey("relationship_partitions")) {
+            if (configs.get("relationship_partitions") instanceof Integer) {
+                N2OConfig.getInstance().setRelationshipPartitions((Integer) configs.get("relationship_partitions"));
+            }
+        }
+
+        if (configs.containsKey("taxonomy_cache_dir")) {
+            N2OConfig.getInstance().setTaxonomyCacheDir(configs.get("taxonomy_cache_dir").toString());
+        }
+
+        if (configs.containsKey("delta_manifest")) {
+            N2OConfig.getInstance().setDeltaManifest(configs.get("delta_manifest").toString());
+        }
+
+        if (configs.containsKey("compress_csv")) {
+            if (configs.get("compress_csv") instanceof Boolean) {
+                N2OConfig.getInstance().setCompressCSV((Boolean) configs.get("compress_csv"));
+            }
+        }
+
+        if (configs.containsKey("csv_shard_size")) {
+            if (configs.get("csv_shard_size") instanceof Integer) {
+                N2OConfig.getInstance().setCSVShardSize((Integer) configs.get("csv_shard_size"));
+            } else {
+                log.warning("CONFIG: csv_shard_size value is not integer, skipping.");
+            }
+        }
+
+        if (configs.containsKey("neo4j_admin_import")) {
+            if (configs.get("neo4j_admin_import") instanceof Boolean) {
+                N2OConfig.getInstance().setNeo4jAdminImport((Boolean) configs.get("neo4j_admin_import"));
+            }
+        }
+
+        if (configs.containsKey("surrogate_keys")) {
+            if (configs.get("surrogate_keys") instanceof Boolean) {
+                N2OConfig.getInstance().setSurrogateKeys((Boolean) configs.get("surrogate_keys"));
+            }
+        }
+
+        if (configs.containsKey("multi_label_nodes")) {
+            if (configs.get("multi_label_nodes") instanceof Boolean) {
+                N2OConfig.getInstance().setMultiLabelNodes((Boolean) configs.get("multi_label_nodes"));
+            }
+        }
+
+        if (configs.containsKey("unique_iri")) {
+            if (configs.get("unique_iri") instanceof Boolean) {
+                N2OConfig.getInstance().setUniqueIri((Boolean) configs.get("unique_iri"));
+            }
+        }
+
+        if (configs.containsKey("indexes")) {
+            if (configs.get("indexes") instanceof ArrayList) {
+                //noinspection unchecked
+                ((ArrayList) configs.get("indexes")).forEach(i->N2OConfig.getInstance().indexes.add(i.toString()));
+            }
+        }
+
+        if (configs.containsKey("index_timeout")) {
+            if (configs.get("index_timeout") instanceof Integer) {
+                N2OConfig.getInstance().setIndexTimeoutInSeconds((Integer) configs.get("index_timeout"));
+            }
+        }
+
+        if (configs.containsKey("preflight")) {
+            Object preflight = configs.get("preflight");
+            // YAML reads an unquoted off (or on) as a boolean
+            if (preflight instanceof Boolean) {
+                preflight = (Boolean) preflight ? "warn" : "off";
+            }
+            N2OConfig.getInstance().setPreflightPolicy(preflight.toString());
+        }
+
+        if (configs.containsKey("preflight_min_rows")) {
+            if (configs.get("preflight_min_rows") instanceof Integer) {
+                N2OConfig.getInstance().setPreflightMinRows((Integer) configs.get("preflight_min_rows"));
+            }
+        }
+
+        if (configs.containsKey("resume")) {
+            if (configs.get("resume") instanceof Boolean) {
+                N2OConfig.getInstance().setResume((Boolean) configs.get("resume"));
+            }
+        }
+
+        if (configs.containsKey("loading_strategy")) {
+            N2OConfig.getInstance().setLoadingStrategy(configs.get("loading_strategy").toString());
+        }
+
         /*if (configs.containsKey("batch")) {
             if (configs.get("batch") instanceof Boolean) {
                 N2OConfig.getInstance().setBatch((Boolean) configs.get("batch"));
@@ -0,0 +1,213 @@
+package ebi.spot.neo4j2owl;
+
+import ebi.spot.neo4j2owl.importer.N2OImportResult;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+
+/**
+ * An import run in the background (owl2ImportAsync), so that the client does not have to hold its connection (and
+ * transaction) open for the entire import. The job reports the phase it is in, how long every phase took and the
+ * statistics of the statements loaded so far (see N2OImportResult), and can be cancelled.
+ *
+ * Jobs run one at a time on a single background thread, in the order they were submitted: the configuration of an
+ * import (N2OConfig) is global. For the same reason, the synchronous imports (owl2Import, importOntology) are run as
+ * jobs too, and wait for them to finish. A cancelled job that is queued is never started. A running job stops before
+ * its next step, and the statements it is running are terminated (see N2ONeoCSVLoader.cancel); it is only
+ * reported as cancelled, and the next job only starts, once they have ended.
+ *
+ * Only the last MAX_FINISHED_JOBS jobs that are no longer queued or running are kept (with their results), older ones
+ * are no longer reported by owl2ImportStatus.
+ */
+class N2OImportJob {
+
+    enum STATUS {
+        QUEUED, RUNNING, DONE, FAILED, CANCELLED
+    }
+
+    private static final int MAX_FINISHED_JOBS = 20;
+    private static final Map<String, N2OImportJob> jobs = new ConcurrentHashMap<>();
+    private static final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "n2o-import-job");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final String id = UUID.randomUUID().toString();
+    private final N2OImportResult result = new N2OImportResult();
+    private final Map<String, Double> phases = new LinkedHashMap<>();
+    private final long submitted = System.currentTimeMillis();
+    private volatile STATUS status = STATUS.QUEUED;
+    private volatile String phase = "Queued";
+    private volatile boolean cancelled = false;
+    private volatile long started = 0;
+    private volatile long finished = 0;
+    private long phaseStarted = 0;
+    private final List<Runnable> cancelHandlers = new ArrayList<>();
+    private final CountDownLatch done = new CountDownLatch(1);
+    private Future<?> future;
+
+    static N2OImportJob submit(Consumer<N2OImportJob> importer) {
+        N2OImportJob job = new N2OImportJob();
+        jobs.put(job.id, job);
+        synchronized (job) {
+            job.future = executor.submit(() -> job.run(importer));
+        }
+        return job;
+    }
+
+    private static synchronized void evictFinishedJobs() {
+        List<N2OImportJob> finishedJobs = new ArrayList<>();
+        for (N2OImportJob job : jobs.values()) {
+            if (job.finished > 0) {
+                finishedJobs.add(job);
+            }
+        }
+        finishedJobs.sort(Comparator.comparingLong(j -> j.finished));
+        for (int i = 0; i < finishedJobs.size() - MAX_FINISHED_JOBS; i++) {
+            jobs.remove(finishedJobs.get(i).id);
+        }
+    }
+
+    static Optional<N2OImportJob> get(String id) {
+        return Optional.ofNullable(jobs.get(id));
+    }
+
+    static Collection<N2OImportJob> getAll() {
+        List<N2OImportJob> all = new ArrayList<>(jobs.values());
+        all.sort(Comparator.comparingLong(j -> j.submitted));
+        return all;
+    }
+
+    /*
+    Blocks until the job has finished. If the waiting thread is interrupted, the job is cancelled, and still waited
+    for.
+     */
+    N2OImportResult await() {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                done.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+                cancel();
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        return result;
+    }
+
+    private void run(Consumer<N2OImportJob> importer) {
+        if (cancelled) {
+            done.countDown();
+            return;
+        }
+        started = System.currentTimeMillis();
+        status = STATUS.RUNNING;
+        try {
+            importer.accept(this);
+        } catch (RuntimeException e) {
+            result.setTerminationKO("ERROR: " + e.getMessage());
+            throw e;
+        } finally {
+            endPhase();
+            finished = System.currentTimeMillis();
+            if (cancelled) {
+                status = STATUS.CANCELLED;
+            } else {
+                status = "OK".equals(result.terminationStatus) ? STATUS.DONE : STATUS.FAILED;
+            }
+            phase = status == STATUS.DONE ? "Done" : phase;
+            done.countDown();
+            evictFinishedJobs();
+        }
+    }
+
+    /*
+    Called by the import when it enters the next phase; a cancelled job stops here.
+     */
+    void enterPhase(String phase) throws N2OException {
+        checkCancelled();
+        endPhase();
+        synchronized (this) {
+            phaseStarted = System.currentTimeMillis();
+        }
+        this.phase = phase;
+        N2OLog.getInstance().log(phase);
+    }
+
+    private synchronized void endPhase() {
+        if (phaseStarted > 0) {
+            phases.put(phase, (System.currentTimeMillis() - phaseStarted) / 1000.0);
+            phaseStarted = 0;
+        }
+    }
+
+    void checkCancelled() throws N2OException {
+        if (cancelled) {
+            throw new N2OException("Import job " + id + " was cancelled.");
+        }
+    }
+
+    /*
+    Called by the import with what stops the statements it runs.
+     */
+    synchronized void onCancel(Runnable handler) {
+        cancelHandlers.add(handler);
+    }
+
+    /*
+    A queued job is cancelled right away. The thread of a running job is not interrupted: that would not stop the
+    statement it is waiting for.
+     */
+    synchronized void cancel() {
+        if (status == STATUS.QUEUED || status == STATUS.RUNNING) {
+            cancelled = true;
+            if (status == STATUS.QUEUED) {
+                finished = System.currentTimeMillis();
+                status = STATUS.CANCELLED;
+                phase = "Cancelled";
+                future.cancel(false);
+                done.countDown();
+                evictFinishedJobs();
+            } else {
+                cancelHandlers.forEach(Runnable::run);
+            }
+        }
+    }
+
+    String getId() {
+        return id;
+    }
+
+    STATUS getStatus() {
+        return status;
+    }
+
+    String getPhase() {
+        return phase;
+    }
+
+    N2OImportResult getResult() {
+        return result;
+    }
+
+    synchronized Map<String, Object> getPhaseTimings() {
+        Map<String, Object> timings = new LinkedHashMap<>(phases);
+        if (phaseStarted > 0) {
+            timings.put(phase, (System.currentTimeMillis() - phaseStarted) / 1000.0);
+        }
+        return timings;
+    }
+
+    double getSeconds() {
+        if (started == 0) {
+            return 0;
+        }
+        return ((finished > 0 ? finished : System.currentTimeMillis()) - started) / 1000.0;
+    }
+}
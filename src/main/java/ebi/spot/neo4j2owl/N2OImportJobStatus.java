@@ -0,0 +1,62 @@
+package ebi.spot.neo4j2owl;
+
+import ebi.spot.neo4j2owl.importer.N2OImportResult;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The state of an import job (see N2OImportJob), as returned by owl2ImportAsync, owl2ImportStatus and
+ * owl2ImportCancel. While the job runs, the counters are those of the statements loaded so far; the result is only
+ * set once the job is no longer running.
+ */
+public class N2OImportJobStatus {
+
+    public String jobId;
+    public String status;
+    public String phase;
+    public double seconds;
+    public long statementsLoaded;
+    public long nodesCreated;
+    public long relationshipsCreated;
+    public Map<String, Object> phases;
+    public Map<String, Object> result;
+
+    N2OImportJobStatus(N2OImportJob job) {
+        N2OImportJob.STATUS s = job.getStatus();
+        this.jobId = job.getId();
+        this.status = s.name();
+        this.phase = job.getPhase();
+        this.seconds = job.getSeconds();
+        this.phases = job.getPhaseTimings();
+        N2OImportResult r = job.getResult();
+        // statements are added by the loading threads (see N2OImportResult.addStatementStatistics)
+        synchronized (r) {
+            this.statementsLoaded = r.statements.size();
+            this.nodesCreated = r.nodesCreated;
+            this.relationshipsCreated = r.relationshipsCreated;
+            if (s != N2OImportJob.STATUS.QUEUED && s != N2OImportJob.STATUS.RUNNING) {
+                this.result = toMap(r);
+            }
+        }
+    }
+
+    private static Map<String, Object> toMap(N2OImportResult r) {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("terminationStatus", r.terminationStatus);
+        m.put("extraInfo", r.extraInfo);
+        m.put("elementsLoaded", r.elementsLoaded);
+        m.put("classesLoaded", r.classesLoaded);
+        m.put("individualsLoaded", r.individualsLoaded);
+        m.put("objPropsLoaded", r.objPropsLoaded);
+        m.put("annotationPropertiesloaded", r.annotationPropertiesloaded);
+        m.put("dataPropsLoaded", r.dataPropsLoaded);
+        m.put("nodesCreated", r.nodesCreated);
+        m.put("relationshipsCreated", r.relationshipsCreated);
+        m.put("propertiesSet", r.propertiesSet);
+        m.put("labelsAdded", r.labelsAdded);
+        m.put("loadingSeconds", r.loadingSeconds);
+        m.put("statements", r.statements);
+        return m;
+    }
+}
@@ -5,7 +5,6 @@ import ebi.spot.neo4j2owl.exporter.N2OReturnValue;
 import ebi.spot.neo4j2owl.importer.*;
 import org.apache.commons.io.FileUtils;
 import org.neo4j.graphdb.GraphDatabaseService;
-import org.neo4j.graphdb.QueryExecutionException;
 import org.neo4j.kernel.configuration.Config;
 import org.neo4j.kernel.internal.GraphDatabaseAPI;
 import org.neo4j.procedure.Context;
@@ -15,8 +14,8 @@ import org.neo4j.procedure.Procedure;
 
 import java.io.File;
 import java.util.Map;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Stream;
 
@@ -37,16 +36,50 @@ public class N2OProcedure {
     @SuppressWarnings("unused")
     @Procedure(mode = Mode.DBMS)
     public Stream<N2OImportResult> owl2Import(@Name("url") String url, @Name("config") String config) {
-        logger.resetTimer();
         N2OImportResult result = owl2Import(url, config, dbapi);
         return Stream.of(result);
     }
 
+    /*
+    Submits the import as a background job (see N2OImportJob) and returns right away; the job is followed with
+    owl2ImportStatus.
+     */
+    @SuppressWarnings("unused")
+    @Procedure(mode = Mode.DBMS)
+    public Stream<N2OImportJobStatus> owl2ImportAsync(@Name("url") String url, @Name("config") String config) {
+        GraphDatabaseAPI api = dbapi;
+        N2OImportJob job = N2OImportJob.submit(j -> {
+            logger.resetTimer();
+            owl2Import(url, config, api, j);
+        });
+        return Stream.of(new N2OImportJobStatus(job));
+    }
+
+    /*
+    The status of the given job, or of all jobs if no job id is given.
+     */
+    @SuppressWarnings("unused")
+    @Procedure(mode = Mode.DBMS)
+    public Stream<N2OImportJobStatus> owl2ImportStatus(@Name(value = "jobId", defaultValue = "") String jobId) {
+        return findJobs(jobId).map(N2OImportJobStatus::new);
+    }
+
+    @SuppressWarnings("unused")
+    @Procedure(mode = Mode.DBMS)
+    public Stream<N2OImportJobStatus> owl2ImportCancel(@Name("jobId") String jobId) {
+        return findJobs(jobId).peek(N2OImportJob::cancel).map(N2OImportJobStatus::new);
+    }
+
+    private Stream<N2OImportJob> findJobs(String jobId) {
+        if (jobId == null || jobId.isEmpty()) {
+            return N2OImportJob.getAll().stream();
+        }
+        return N2OImportJob.get(jobId).map(Stream::of).orElseThrow(() -> new IllegalArgumentException("No import job with id " + jobId));
+    }
+
     @SuppressWarnings("unused")
     @Procedure(mode = Mode.DBMS)
     public Stream<N2OImportResult> importOntology(@Name("url") String url) {
-        logger.resetTimer();
-        N2OImportService importService = new N2OImportService();
         N2OImportResult result = owl2Import(url, null, dbapi);
         return Stream.of(result);
     }
@@ -61,38 +94,97 @@ public class N2OProcedure {
     }
 
 
+    /*
+    The synchronous import runs as an import job as well, so that it never runs alongside an asynchronous one: the
+    configuration of an import (N2OConfig) is global.
+     */
     public N2OImportResult owl2Import(String url, String config, GraphDatabaseAPI dbapi) {
+        N2OImportJob job = N2OImportJob.submit(j -> {
+            logger.resetTimer();
+            owl2Import(url, config, dbapi, j);
+        });
+        return job.await();
+    }
+
+    private void owl2Import(String url, String config, GraphDatabaseAPI dbapi, N2OImportJob job) {
         N2OImportService importService = new N2OImportService();
         File importdir = prepareImportDirectory(dbapi);
-        N2OImportResult importResults = new N2OImportResult();
+        N2OImportResult importResults = job.getResult();
+        N2OImportManifest manifest = N2OImportManifest.disabled();
+        final ThreadPoolExecutor exService = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>());
         try {
             importService.prepareConfig(config, importdir);
+            if (N2OConfig.getInstance().isNeo4jAdminImport()) {
+                throw new N2OException("neo4j_admin_import is only supported by the offline N2OImporterRunner.");
+            }
+            manifest = importService.prepareImportManifest(url, importdir);
+            if (!manifest.hasCSVFiles()) {
+                deleteCSVFilesInImportsDir(importdir);
+            }
 
-            logger.log("Preprocessing...");
-            final ExecutorService exService = Executors.newSingleThreadExecutor();
+            N2ONeoCSVLoader csvLoader = new N2ONeoCSVLoader(dbapi, importResults, manifest);
+            job.onCancel(csvLoader::cancel);
+            job.enterPhase("Preprocessing...");
             for(String cypher:N2OConfig.getInstance().getPreprocessingCypherQueries()) {
-                try {
-                    runQuery(dbapi, exService, cypher);
-                } catch (QueryExecutionException e) {
-                    throw new N2OException(N2OStatic.CYPHER_FAILED_TO_EXECUTE + cypher, e);
+                job.checkCancelled();
+                if (manifest.isCompleted(cypher)) {
+                    logger.log("Skipped, already completed: " + cypher);
+                    continue;
                 }
+                exService.submit(() -> {
+                    csvLoader.preflight(cypher);
+                    return null;
+                }).get();
+                exService.submit(() -> csvLoader.runPreprocessingStatement(cypher)).get();
+                manifest.complete(cypher);
             }
 
             //inserter = BatchInserters.inserter( inserttmp);
-            logger.log("Converting OWL ontology to CSV..");
-            N2OCSVWriter csvWriter = importService.prepareCSVFilesForImport(url, importdir, importResults);
-
-            logger.log("Create necessary indices..");
-            runQuery(dbapi, exService,"CREATE INDEX ON :Entity(iri)");
+            job.enterPhase("Converting OWL ontology to CSV..");
+            N2OCSVWriter csvWriter = null;
+            N2OImportCSVConfig csvConfig;
+            if (manifest.hasCSVFiles()) {
+                logger.log("Resuming from the CSV files of the previous import..");
+                csvConfig = manifest.getCSVImportConfig();
+                manifest.restoreResult(importResults);
+            } else {
+                csvWriter = importService.prepareCSVFilesForImport(url, importdir, importResults);
+                csvConfig = csvWriter.getCSVImportConfig();
+                manifest.saveCSVFiles(csvConfig, importResults, importdir);
+            }
 
-            logger.log("Loading nodes to neo from CSV.");
-            N2ONeoCSVLoader csvLoader = new N2ONeoCSVLoader(dbapi);
-            csvLoader.loadNodesToNeoFromCSV(exService, csvWriter.getCSVImportConfig(), importdir);
+            job.enterPhase("Create necessary indices..");
+            new N2ONeoIndexPreparer(dbapi).prepareIndexes(exService);
+
+            job.enterPhase("Loading nodes..");
+            csvLoader.loadNodesToNeoFromCSV(exService, csvConfig, importdir);
+            N2ONeoUnwindLoader unwindLoader = new N2ONeoUnwindLoader(dbapi, importResults);
+            N2ONeoCoreAPILoader coreAPILoader = new N2ONeoCoreAPILoader(dbapi, importResults);
+            // resume is only supported for load_csv, so the rows of the other strategies have just been prepared
+            boolean loadCSV = N2OConfig.getInstance().getLoadingStrategy() == LOADING_STRATEGY.LOAD_CSV;
+            boolean coreAPI = N2OConfig.getInstance().getLoadingStrategy() == LOADING_STRATEGY.CORE_API;
+            if (coreAPI) {
+                coreAPILoader.loadNodesToNeo(exService, csvWriter);
+            } else if (!loadCSV) {
+                unwindLoader.loadNodesToNeo(exService, csvWriter);
+            }
 
-            logger.log("Loading relationships to neo from CSV.");
-            csvLoader.loadRelationshipsToNeoFromCSV(exService, csvWriter.getCSVImportConfig(), importdir);
+            job.enterPhase("Loading relationships..");
+            csvLoader.loadRelationshipsToNeoFromCSV(exService, csvConfig, importdir);
+            if (coreAPI) {
+                coreAPILoader.loadRelationshipsToNeo(exService, csvWriter);
+            } else if (!loadCSV) {
+                unwindLoader.loadRelationshipsToNeo(exService, csvWriter);
+            }
+            if (N2OConfig.getInstance().isSurrogateKeys() && loadCSV) {
+                csvLoader.removeSurrogateKeys(exService);
+            }
+            if (csvWriter != null) {
+                csvWriter.saveDeltaManifest();
+            }
+            manifest.delete();
 
-            logger.log("Loading done..");
+            job.enterPhase("Loading done..");
             exService.shutdown();
             try {
                 logger.log("Stopping executor..");
@@ -109,11 +201,18 @@ public class N2OProcedure {
             importResults.setTerminationKO("ERROR: "+e.getMessage());
         } finally {
             logger.log("done");
+            // after an error (or when cancelled), the statement that is still running is waited for, so that it does
+            // not run alongside the next import
+            N2OUtils.stopExecutor(exService);
             N2OConfig.resetConfig();
             //logger.error("delete CSV file IN IMPORTS DIR IS UNCOMMENTED! COMMENT!!!");
-            deleteCSVFilesInImportsDir(importdir);
+            // the CSV files of a failed resumable import are kept for the next run
+            if (manifest.isEnabled() && manifest.hasCSVFiles() && !"OK".equals(importResults.terminationStatus)) {
+                logger.log("Keeping the CSV files for resuming the import..");
+            } else {
+                deleteCSVFilesInImportsDir(importdir);
+            }
         }
-        return importResults;
     }
 
     private File prepareImportDirectory(GraphDatabaseAPI dbapi) {
@@ -134,30 +233,16 @@ public class N2OProcedure {
         } else {
             logger.warning("Import directory path (or base neo4j directory) not in neo4j config. Trying to find manually.");
         }
-        if (importdir.getAbsoluteFile().exists()) {
-            deleteCSVFilesInImportsDir(importdir);
-        }
         return importdir;
     }
 
     private void deleteCSVFilesInImportsDir(File importdir) {
         if (importdir.exists()) {
             for (File f : FileUtils.listFiles(importdir,null,false)) {
-                if (f.getName().startsWith(N2OCSVWriter.CSV_TYPE.NODES.name()) || f.getName().startsWith(N2OCSVWriter.CSV_TYPE.RELATIONSHIPS.name())) {
+                if (N2OUtils.isN2OCSVFile(f)) {
                     FileUtils.deleteQuietly(f);
                 }
             }
         }
     }
-
-    private void runQuery(GraphDatabaseAPI dbapi, ExecutorService exService, String cypher) {
-        exService.submit(() -> {
-            try {
-                dbapi.execute(cypher);
-            } catch (QueryExecutionException e) {
-                throw new N2OException(N2OStatic.CYPHER_FAILED_TO_EXECUTE+cypher, e);
-            }
-            return N2OStatic.CYPHER_EXECUTED_SUCCESSFULLY+cypher;
-        });
-    }
 }
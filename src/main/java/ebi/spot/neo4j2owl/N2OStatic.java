@@ -12,7 +12,7 @@ public class N2OStatic {
     private static final String NODETYPE_OWLANNOTATIONPROPERTY = "AnnotationProperty";
     private static final String NODETYPE_OWLDATAPROPERTY = "DataProperty";
     public static final String NODETYPE_PROPERTY = "Property";
-    private static final String NODETYPE_OWLENTITY = "Entity";
+    public static final String NODETYPE_OWLENTITY = "Entity";
     public static final String RELTYPE_SUBCLASSOF = "SUBCLASSOF";
     public static final String RELTYPE_INSTANCEOF = "INSTANCEOF";
     private static final String NEO4J_LABEL = "http://n2o.neo/property/nodeLabel";
@@ -26,6 +26,7 @@ public class N2OStatic {
     public static final String ATT_IRI = "iri";
     public static final String ATT_SHORT_FORM = "short_form";
     public static final String ATT_NODE_TYPE = "type";
+    public static final String ATT_SURROGATE_KEY = "n2o_nid";
 
     public static final String ANNOTATION_DELIMITER  = "~|~|~";
     public static final String ANNOTATION_DELIMITER_ESCAPED  = "\\~\\|\\~\\|\\~";
@@ -35,6 +36,9 @@ public class N2OStatic {
     public static final String CYPHER_FAILED_TO_EXECUTE = "Cypher query did NOT complete successfully (ERROR): ";
     public static final String CYPHER_EXECUTED_SUCCESSFULLY = "Cypher finished successfully: ";
     public static final String CSV_EXTENSION = ".csv";
+    public static final String GZIP_EXTENSION = ".gz";
+    public static final String PENDING_SUFFIX = ".pending";
+    public static final String NEO4J_ADMIN_IMPORT_SCRIPT = "neo4j-admin-import.sh";
 
     public static String getNeoType(OWLEntity e) {
         if(e instanceof OWLClass) {
@@ -5,21 +5,38 @@ import ebi.spot.neo4j2owl.N2OLog;
 import ebi.spot.neo4j2owl.N2OStatic;
 import org.semanticweb.owlapi.model.IRI;
 import org.semanticweb.owlapi.model.OWLEntity;
-import org.semanticweb.owlapi.model.OWLOntology;
 import org.semanticweb.owlapi.util.DefaultPrefixManager;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Pattern;
 
 class IRIManager {
 
     private final Pattern p = Pattern.compile("[a-zA-Z]+[_]+[0-9]+");
-    private final Map<String,String> prefixNamespaceMap = new HashMap<>();
-    private final Map<String,String> namespacePrefixMap = new HashMap<>();
-    private final List<String> sortedUrlNamespaces = new ArrayList<>();
+    private final Map<String,String> prefixNamespaceMap = new ConcurrentHashMap<>();
+    private final Map<String,String> namespacePrefixMap = new ConcurrentHashMap<>();
+    private final NamespaceTrie namespaces = new NamespaceTrie();
+    private final Map<IRI, IRIMetadata> iriMetadata = new ConcurrentHashMap<>();
     private int NAMESPACECOUNTER = 0;
     private static N2OLog logger = N2OLog.getInstance();
 
+    /*
+    The prefix, curie and short form of an IRI, which all depend on its namespace, are computed together and only once
+    per import.
+     */
+    private static class IRIMetadata {
+        private final String prefix;
+        private final String curie;
+        private final String shortForm;
+
+        private IRIMetadata(String prefix, String curie, String shortForm) {
+            this.prefix = prefix;
+            this.curie = curie;
+            this.shortForm = shortForm;
+        }
+    }
+
     IRIManager() {
         addPrefixNamespacePair(N2OStatic.NEO4J_UNMAPPED_PROPERTY_PREFIX_URI, "n2oc");
         addPrefixNamespacePair(N2OStatic.NEO4J_BUILTIN_PROPERTY_PREFIX_URI, "n2o");
@@ -31,15 +48,12 @@ class IRIManager {
 
     // The namespace is the first part of the url like http://purl.obolibrary.org/obo/RO_
     private String getUrlNamespace(IRI iri) {
-        String iris = iri.toString();
+        return namespaces.getLongestNamespace(iri.toString()).orElseGet(() -> registerUrlNamespace(iri));
+    }
 
-        for(String urlNamespace:sortedUrlNamespaces) {
-            if(!urlNamespace.isEmpty()) {
-                if (iris.startsWith(urlNamespace)) {
-                    return urlNamespace;
-                }
-            }
-        }
+    // Namespaces are registered lazily; this is synchronised so that entities can be processed concurrently.
+    private synchronized String registerUrlNamespace(IRI iri) {
+        String iris = iri.toString();
 
         if(isOBOesque(iris)) {
             String obopre = iris.split("_")[0];
@@ -47,7 +61,7 @@ class IRIManager {
             if(namespacePrefixMap.containsKey(obons)) {
                 return obons;
             }
-            String prefix = obopre.replaceAll(N2OStatic.OBONS,"");
+            String prefix = obopre.substring(N2OStatic.OBONS.length());
             addPrefixNamespacePair(obons,prefix);
             return obons;
         }
@@ -79,25 +93,41 @@ class IRIManager {
         }
     }
 
-    private void addPrefixNamespacePair(String ns, String prefix) {
+    private synchronized void addPrefixNamespacePair(String ns, String prefix) {
         N2OLog.getInstance().info("Adding NS: "+ns+" to "+prefix);
         namespacePrefixMap.put(ns, prefix);
         prefixNamespaceMap.put(prefix, ns);
-        sortedUrlNamespaces.add(ns);
-        sortedUrlNamespaces.sort(Collections.reverseOrder());
-        //sortedUrlNamespaces.forEach(System.out::println);
+        namespaces.add(ns);
     }
 
     private boolean isOBOesque(String iri) {
         if(iri.startsWith(N2OStatic.OBONS)) {
-            String remain = iri.replaceAll(N2OStatic.OBONS,"");
+            String remain = iri.substring(N2OStatic.OBONS.length());
             return p.matcher(remain).matches();
         }
         return false;
     }
 
-    private String getPrefix(IRI iri) {
-        return namespacePrefixMap.get(getUrlNamespace(iri));
+    private IRIMetadata getIRIMetadata(IRI iri) {
+        return iriMetadata.computeIfAbsent(iri, this::computeIRIMetadata);
+    }
+
+    private IRIMetadata computeIRIMetadata(IRI e) {
+        String iri = e.toString();
+        String namespace = getUrlNamespace(e);
+        String prefix = namespacePrefixMap.get(namespace);
+        String short_form = toSafeCharacters(iri.substring(namespace.length()));
+        if (short_form.isEmpty()){
+            short_form = toSafeCharacters(iri);
+        }
+        String curie = prefix + ":" + short_form;
+        if(namespace.endsWith(prefix+"_")) {
+            short_form = prefix+"_"+short_form;
+        } else if(Character.isDigit(short_form.charAt(0))) {
+            short_form = prefix+"_"+short_form;
+            logger.info("A short_form (" + namespace + ") starts with a digit: " + short_form);
+        }
+        return new IRIMetadata(prefix, curie, short_form);
     }
 
     private char encode(int c) {
@@ -114,57 +144,68 @@ class IRIManager {
         }
     }
 
+    // Replaces every character other than [0-9a-zA-Z_] by an underscore; s itself is returned if there are none.
+    private static String toSafeCharacters(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            if (!isSafeCharacter(s.charAt(i))) {
+                StringBuilder sb = new StringBuilder(s.length()).append(s, 0, i);
+                s.codePoints().skip(s.codePointCount(0, i)).forEach(c -> sb.append(isSafeCharacter(c) ? (char) c : '_'));
+                return sb.toString();
+            }
+        }
+        return s;
+    }
+
+    private static boolean isSafeCharacter(int c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
+    }
+
     String getCurie(OWLEntity e) {
-        String iri = e.getIRI().toString();
-        String namespace = getUrlNamespace(e.getIRI());
-        String prefix = namespacePrefixMap.get(namespace);
-        String short_form = iri.replaceAll(namespace,"").replaceAll("[^0-9a-zA-Z_]", "_");
-        if(short_form.isEmpty()) {
-            short_form = iri.replaceAll("[^0-9a-zA-Z_]", "_");
+        return getIRIMetadata(e.getIRI()).curie;
+    }
+
+    String getLabel(OWLEntity e, N2OAxiomIndex index) {
+        Set<String> labels = index.getLabels(e);
+        if(labels.isEmpty() && index.isStreamed(e)) {
+            // labelled once the stream reaches it
+            return getShortFormLabel(e);
         }
-        return prefix+":" +short_form;
+        return getLabel(e, labels);
     }
 
-    String getLabel(OWLEntity e, OWLOntology o) {
-        Set<String> labels = N2OUtils.getLabels(e,o);
+    String getLabel(OWLEntity e, Set<String> labels) {
         if(!labels.isEmpty()) {
             return labels.iterator().next();
         }
         if(!N2OConfig.getInstance().isAllowEntitiesWithoutLabels() && N2OConfig.getInstance().safeLabelMode().equals(LABELLING_MODE.SL_STRICT)) {
             throw new RuntimeException("No label for entity "+e.getIRI()+", which is not allowed in 'strict' mode!");
         }
+        return getShortFormLabel(e);
+    }
+
+    private String getShortFormLabel(OWLEntity e) {
         String shortform = getShortForm(e.getIRI());
         if(shortform==null||shortform.isEmpty()) {
-            return e.getIRI().toString().replaceAll("[^A-Za-z0-9_]","_");
+            return toSafeCharacters(e.getIRI().toString());
         } else {
             return shortform;
         }
     }
 
-    String getSafeLabel(OWLEntity e, OWLOntology o) {
-        String label = getLabel(e,o).trim();
-        return label.chars().collect(StringBuilder::new, (sb, c) -> sb.append(encode(c)), StringBuilder::append).toString();
+    /*
+    The safe and qualified safe labels are derived from the label (see getLabel), so that it is only looked up once
+    per entity.
+     */
+    String getSafeLabel(String label) {
+        return label.trim().chars().collect(StringBuilder::new, (sb, c) -> sb.append(encode(c)), StringBuilder::append).toString();
     }
 
-    String getQualifiedSafeLabel(OWLEntity e, OWLOntology o) {
-        return getSafeLabel(e,o)+"_"+ getPrefix(e.getIRI());
+    String getQualifiedSafeLabel(String safeLabel, IRI iri) {
+        return safeLabel+"_"+ getIRIMetadata(iri).prefix;
     }
 
     String getShortForm(IRI e) {
-        String iri = e.toString();
-        String namespace = getUrlNamespace(e);
-        String prefix = namespacePrefixMap.get(namespace);
-        String short_form = iri.replaceAll(namespace,"").replaceAll("[^0-9a-zA-Z_]", "_");
-        if (short_form.isEmpty()){
-            short_form = iri.replaceAll("[^0-9a-zA-Z_]", "_");
-        }
-        if(namespace.endsWith(prefix+"_")) {
-            short_form = prefix+"_"+short_form;
-        } else if(Character.isDigit(short_form.charAt(0))) {
-            short_form = prefix+"_"+short_form;
-            logger.info("A short_form (" + namespace + ") starts with a digit: " + short_form);
-        }
-        return short_form;
+        return getIRIMetadata(e).shortForm;
     }
 
 
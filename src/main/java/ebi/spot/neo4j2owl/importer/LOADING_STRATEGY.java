@@ -0,0 +1,6 @@
+package ebi.spot.neo4j2owl.importer;
+
+public enum LOADING_STRATEGY
+{
+    LOAD_CSV, UNWIND, CORE_API;
+}
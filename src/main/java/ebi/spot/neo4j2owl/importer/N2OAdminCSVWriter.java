@@ -0,0 +1,190 @@
+package ebi.spot.neo4j2owl.importer;
+
+import ebi.spot.neo4j2owl.N2OException;
+import ebi.spot.neo4j2owl.N2OLog;
+import ebi.spot.neo4j2owl.N2OStatic;
+import org.apache.commons.io.FileUtils;
+import org.semanticweb.owlapi.model.OWLEntity;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Writes the N2O model as node and relationship files for the offline neo4j-admin import tool, which can only
+ * load into an empty database, but is much faster than LOAD CSV.
+ *
+ * The files are equivalent to what the LOAD CSV statements produce: every node is written exactly once (punned
+ * entities are merged by iri), with all its labels in the :LABEL column, and every relationship is written once per
+ * type, start and end (like MERGE, the last one wins). Non built-in properties are written as typed arrays (see
+ * N2OPropertyTypes).
+ */
+class N2OAdminCSVWriter {
+
+    // neo4j-admin only supports a single character as array delimiter; this one does not occur in annotations.
+    private static final char ARRAY_DELIMITER = '\u001F';
+    private static final String NODE_FILE_PREFIX = "admin_";
+
+    private final N2OImportManager manager;
+    private final N2OPropertyTypes propertyTypes;
+    private final File dir;
+    private final N2OLog log = N2OLog.getInstance();
+    private final List<File> nodeFiles = new ArrayList<>();
+    private final Map<String, File> relationshipFiles = new LinkedHashMap<>();
+
+    /**
+     * @param datatypes the (LOAD CSV) datatype of a property, such as String or Integer
+     */
+    N2OAdminCSVWriter(N2OImportManager manager, Function<String, String> datatypes, File dir) {
+        this.manager = manager;
+        this.propertyTypes = new N2OPropertyTypes(datatypes);
+        this.dir = dir;
+    }
+
+    void export() throws N2OException {
+        Map<String, Set<String>> labels = new HashMap<>();
+        Map<String, Map<String, Object>> properties = new HashMap<>();
+        for (Map.Entry<OWLEntity, Map<String, Object>> e : manager.getNodeProperties().entrySet()) {
+            Optional<N2OEntity> oe = manager.getNode(e.getKey());
+            if (oe.isPresent()) {
+                String iri = oe.get().getIri();
+                labels.computeIfAbsent(iri, k -> new TreeSet<>(Collections.singleton(N2OStatic.NODETYPE_OWLENTITY))).addAll(oe.get().getTypes());
+                properties.computeIfAbsent(iri, k -> new HashMap<>()).putAll(e.getValue());
+            }
+        }
+        writeNodes(labels, properties);
+        writeRelationships(labels.keySet());
+    }
+
+    /*
+    Nodes are grouped by their label set, so that every file only has the columns its nodes use.
+     */
+    private void writeNodes(Map<String, Set<String>> labels, Map<String, Map<String, Object>> properties) throws N2OException {
+        Map<Set<String>, List<String>> labelSets = new LinkedHashMap<>();
+        labels.forEach((iri, l) -> labelSets.computeIfAbsent(l, k -> new ArrayList<>()).add(iri));
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<Set<String>, List<String>> labelSet : labelSets.entrySet()) {
+            Set<String> columnSet = new TreeSet<>();
+            labelSet.getValue().forEach(iri -> columnSet.addAll(properties.get(iri).keySet()));
+            columnSet.remove(N2OStatic.ATT_IRI);
+            List<String> columns = new ArrayList<>(columnSet);
+            String labelCell = String.join(String.valueOf(ARRAY_DELIMITER), labelSet.getKey());
+
+            File f = N2OUtils.constructFileHandle(dir, N2OCSVWriter.CSV_TYPE.NODES.name, NODE_FILE_PREFIX + (nodeFiles.size() + 1));
+            try (N2OCSVFileWriter csvout = new N2OCSVFileWriter(f)) {
+                csvout.writeRow(N2OStatic.ATT_IRI + ":ID," + constructHeader(columns) + ":LABEL");
+                for (String iri : labelSet.getValue()) {
+                    sb.setLength(0);
+                    N2OCSVCellEncoder.appendAdminCell(sb, iri);
+                    sb.append(",");
+                    writeRowFromColumns(columns, sb, properties.get(iri));
+                    N2OCSVCellEncoder.appendAdminCell(sb, labelCell);
+                    csvout.writeRow(sb);
+                }
+            }
+            nodeFiles.add(f);
+        }
+    }
+
+    private void writeRelationships(Set<String> nodes) throws N2OException {
+        N2ORelationshipStore store = manager.getRelationshipStore();
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, int[]> type : store.indexByType().entrySet()) {
+            // Like MERGE, only keep the last relationship between two nodes. Relationships to nodes that were not
+            // exported are dropped, just like MATCH would.
+            Map<String, Integer> merged = new LinkedHashMap<>();
+            for (int r : type.getValue()) {
+                String start = manager.getNodeById(store.getStart(r)).getIri();
+                String end = manager.getNodeById(store.getEnd(r)).getIri();
+                if (nodes.contains(start) && nodes.contains(end)) {
+                    merged.put(start + " " + end, r);
+                }
+            }
+            if (merged.isEmpty()) {
+                continue;
+            }
+            int[] rels = merged.values().stream().mapToInt(Integer::intValue).toArray();
+            List<String> columns = new ArrayList<>(new TreeSet<>(store.getPropertyKeys(rels)));
+
+            File f = N2OUtils.constructFileHandle(dir, N2OCSVWriter.CSV_TYPE.RELATIONSHIPS.name, type.getKey());
+            try (N2OCSVFileWriter csvout = new N2OCSVFileWriter(f)) {
+                csvout.writeRow(":START_ID,:END_ID," + constructHeader(columns).replaceAll(",$", ""));
+                for (int r : rels) {
+                    sb.setLength(0);
+                    N2OCSVCellEncoder.appendAdminCell(sb, manager.getNodeById(store.getStart(r)).getIri());
+                    sb.append(",");
+                    N2OCSVCellEncoder.appendAdminCell(sb, manager.getNodeById(store.getEnd(r)).getIri());
+                    sb.append(",");
+                    writeRowFromColumns(columns, sb, store.getProperties(r));
+                    sb.setLength(sb.length() - 1);
+                    csvout.writeRow(sb);
+                }
+            }
+            relationshipFiles.put(type.getKey(), f);
+        }
+    }
+
+    private String constructHeader(List<String> columns) {
+        StringBuilder sb = new StringBuilder();
+        for (String column : columns) {
+            sb.append(column);
+            String type = propertyTypes.getType(column);
+            if (type != null) {
+                sb.append(":").append(type).append("[]");
+            }
+            sb.append(",");
+        }
+        return sb.toString();
+    }
+
+    /*
+    Built-in properties are plain strings, all others are arrays of the datatype the LOAD CSV statements would
+    convert them to.
+     */
+    private void writeRowFromColumns(List<String> columns, StringBuilder sb, Map<String, Object> rec) {
+        for (String column : columns) {
+            Object value = rec.get(column);
+            if (value != null) {
+                Object converted = propertyTypes.toPropertyValue(column, value);
+                if (converted instanceof List) {
+                    String array = ((List<?>) converted).stream().map(String::valueOf).collect(Collectors.joining(String.valueOf(ARRAY_DELIMITER)));
+                    if (!array.isEmpty()) {
+                        N2OCSVCellEncoder.appendAdminCell(sb, array);
+                    }
+                } else {
+                    N2OCSVCellEncoder.appendAdminCell(sb, converted);
+                }
+            }
+            sb.append(",");
+        }
+    }
+
+    /*
+    The command line that imports the written files into an (empty) database. Further arguments to neo4j-admin, such
+    as --database, are passed on.
+     */
+    void exportImportCommand(File f) throws IOException {
+        List<String> lines = new ArrayList<>();
+        lines.add("#!/bin/sh");
+        lines.add("neo4j-admin import \\");
+        lines.add("  --id-type=STRING \\");
+        lines.add("  --multiline-fields=true \\");
+        lines.add("  --legacy-style-quoting=false \\");
+        lines.add("  --array-delimiter='\\" + (int) ARRAY_DELIMITER + "' \\");
+        for (File nodes : nodeFiles) {
+            lines.add("  --nodes '" + nodes.getAbsolutePath() + "' \\");
+        }
+        for (Map.Entry<String, File> rels : relationshipFiles.entrySet()) {
+            lines.add("  --relationships:" + rels.getKey() + " '" + rels.getValue().getAbsolutePath() + "' \\");
+        }
+        lines.add("  \"$@\"");
+        FileUtils.writeLines(f, StandardCharsets.UTF_8.name(), lines, "\n");
+        if (!f.setExecutable(true)) {
+            log.warning("Could not make " + f + " executable.");
+        }
+        log.log("Wrote neo4j-admin import command: " + f);
+    }
+}
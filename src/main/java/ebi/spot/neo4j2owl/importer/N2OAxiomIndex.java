@@ -0,0 +1,115 @@
+package ebi.spot.neo4j2owl.importer;
+
+import org.semanticweb.owlapi.model.*;
+import org.semanticweb.owlapi.model.parameters.Imports;
+import org.semanticweb.owlapi.vocab.OWLRDFVocabulary;
+
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * Indexes the axioms of an ontology (including its imports) in a single pass, so that the different stages of the
+ * import do not have to scan the signature and the axioms of the ontology over and over again.
+ *
+ * Annotation assertions (and the rdfs:labels among them) are only taken from the ontology itself, not from its
+ * imports, just like EntitySearcher does.
+ */
+class N2OAxiomIndex {
+
+    private final Set<OWLEntity> signature;
+    private final List<OWLClass> classes = new ArrayList<>();
+    private final List<OWLNamedIndividual> individuals = new ArrayList<>();
+    private final Map<IRI, List<OWLAnnotationAssertionAxiom>> annotationAssertions = new HashMap<>();
+    private final Map<IRI, Set<String>> labels = new HashMap<>();
+    private final List<OWLSubClassOfAxiom> subClassOfAxioms = new ArrayList<>();
+    private final List<OWLEquivalentClassesAxiom> equivalentClassesAxioms = new ArrayList<>();
+    private final List<OWLClassAssertionAxiom> classAssertionAxioms = new ArrayList<>();
+    private final List<OWLObjectPropertyAssertionAxiom> objectPropertyAssertionAxioms = new ArrayList<>();
+    private Predicate<IRI> streamed = iri -> false;
+
+    N2OAxiomIndex(OWLOntology o) {
+        signature = o.getSignature(Imports.INCLUDED);
+        for (OWLEntity e : signature) {
+            if (e.isOWLClass()) {
+                classes.add(e.asOWLClass());
+            } else if (e.isOWLNamedIndividual()) {
+                individuals.add(e.asOWLNamedIndividual());
+            }
+        }
+        boolean hasImports = !o.getImports().isEmpty();
+        for (OWLAxiom ax : o.getAxioms(Imports.INCLUDED)) {
+            if (ax instanceof OWLAnnotationAssertionAxiom) {
+                if (!hasImports || o.containsAxiom(ax)) {
+                    indexAnnotationAssertion((OWLAnnotationAssertionAxiom) ax);
+                }
+            } else if (ax instanceof OWLSubClassOfAxiom) {
+                subClassOfAxioms.add((OWLSubClassOfAxiom) ax);
+            } else if (ax instanceof OWLEquivalentClassesAxiom) {
+                equivalentClassesAxioms.add((OWLEquivalentClassesAxiom) ax);
+            } else if (ax instanceof OWLClassAssertionAxiom) {
+                classAssertionAxioms.add((OWLClassAssertionAxiom) ax);
+            } else if (ax instanceof OWLObjectPropertyAssertionAxiom) {
+                objectPropertyAssertionAxioms.add((OWLObjectPropertyAssertionAxiom) ax);
+            }
+        }
+    }
+
+    private void indexAnnotationAssertion(OWLAnnotationAssertionAxiom ax) {
+        if (!(ax.getSubject() instanceof IRI)) {
+            return;
+        }
+        IRI subject = (IRI) ax.getSubject();
+        annotationAssertions.computeIfAbsent(subject, k -> new ArrayList<>(2)).add(ax);
+        if (ax.getProperty().getIRI().equals(OWLRDFVocabulary.RDFS_LABEL.getIRI()) && ax.getValue() instanceof OWLLiteral) {
+            labels.computeIfAbsent(subject, k -> new HashSet<>()).add(((OWLLiteral) ax.getValue()).getLiteral());
+        }
+    }
+
+    /*
+    Entities that are not part of the ontology object, such as streamed individuals: their labels are only known once
+    the stream reaches them (see N2OImportManager.setLabel).
+     */
+    void setStreamed(Predicate<IRI> streamed) {
+        this.streamed = streamed;
+    }
+
+    boolean isStreamed(OWLEntity e) {
+        return streamed.test(e.getIRI());
+    }
+
+    Set<OWLEntity> getSignature() {
+        return signature;
+    }
+
+    List<OWLClass> getClasses() {
+        return classes;
+    }
+
+    List<OWLNamedIndividual> getIndividuals() {
+        return individuals;
+    }
+
+    List<OWLAnnotationAssertionAxiom> getAnnotationAssertionAxioms(OWLEntity e) {
+        return annotationAssertions.getOrDefault(e.getIRI(), Collections.emptyList());
+    }
+
+    Set<String> getLabels(OWLEntity e) {
+        return labels.getOrDefault(e.getIRI(), Collections.emptySet());
+    }
+
+    List<OWLSubClassOfAxiom> getSubClassOfAxioms() {
+        return subClassOfAxioms;
+    }
+
+    List<OWLEquivalentClassesAxiom> getEquivalentClassesAxioms() {
+        return equivalentClassesAxioms;
+    }
+
+    List<OWLClassAssertionAxiom> getClassAssertionAxioms() {
+        return classAssertionAxioms;
+    }
+
+    List<OWLObjectPropertyAssertionAxiom> getObjectPropertyAssertionAxioms() {
+        return objectPropertyAssertionAxioms;
+    }
+}
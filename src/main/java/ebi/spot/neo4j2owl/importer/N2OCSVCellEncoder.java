@@ -0,0 +1,67 @@
+package ebi.spot.neo4j2owl.importer;
+
+/**
+ * Encodes values as quoted CSV cells for LOAD CSV (or neo4j-admin import), in a single pass directly into the
+ * (reused) row buffer.
+ *
+ * Every cell is quoted. If the value contains a quote, quotes are doubled and backslashes are escaped as well
+ * (LOAD CSV would otherwise read \" as an escaped quote); values without quotes are written as they are.
+ * See https://neo4j.com/developer/kb/space-in-import-filename-for-load-csv/
+ */
+final class N2OCSVCellEncoder {
+
+    private static final char QUOTE = '"';
+    private static final char BACKSLASH = '\\';
+
+    private N2OCSVCellEncoder() {
+    }
+
+    static void appendCell(StringBuilder sb, Object o) {
+        CharSequence val = o instanceof CharSequence ? (CharSequence) o : o.toString();
+        sb.append(QUOTE);
+        if (!containsQuote(val)) {
+            sb.append(val);
+        } else {
+            for (int i = 0; i < val.length(); i++) {
+                char c = val.charAt(i);
+                if (c == QUOTE || c == BACKSLASH) {
+                    sb.append(c);
+                }
+                sb.append(c);
+            }
+        }
+        sb.append(QUOTE);
+    }
+
+    /**
+     * Appends the value as a quoted cell for neo4j-admin import, which only doubles quotes; backslashes are written
+     * as they are.
+     */
+    static void appendAdminCell(StringBuilder sb, Object o) {
+        CharSequence val = o instanceof CharSequence ? (CharSequence) o : o.toString();
+        sb.append(QUOTE);
+        for (int i = 0; i < val.length(); i++) {
+            char c = val.charAt(i);
+            if (c == QUOTE) {
+                sb.append(c);
+            }
+            sb.append(c);
+        }
+        sb.append(QUOTE);
+    }
+
+    static String encodeCell(Object o) {
+        StringBuilder sb = new StringBuilder();
+        appendCell(sb, o);
+        return sb.toString();
+    }
+
+    private static boolean containsQuote(CharSequence val) {
+        for (int i = 0; i < val.length(); i++) {
+            if (val.charAt(i) == QUOTE) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,80 @@
+package ebi.spot.neo4j2owl.importer;
+
+import ebi.spot.neo4j2owl.N2OException;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes the rows of a CSV file as they are produced, through a bounded buffer, so that the rows of a file never
+ * have to be held in memory all at once.
+ */
+class N2OCSVFileWriter implements AutoCloseable {
+
+    private static final int WRITE_BUFFER_SIZE = 1 << 16;
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+
+    private final File file;
+    private final Writer writer;
+    private char[] rowBuffer = new char[1024];
+
+    N2OCSVFileWriter(File file) throws N2OException {
+        this.file = file;
+        try {
+            FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+            if (N2OUtils.isCompressed(file)) {
+                OutputStream out = new GZIPOutputStream(Channels.newOutputStream(channel), WRITE_BUFFER_SIZE);
+                this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), WRITE_BUFFER_SIZE);
+            } else {
+                this.writer = new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8.newEncoder(), -1), WRITE_BUFFER_SIZE);
+            }
+        } catch (IOException e) {
+            throw new N2OException("Writing to file " + file + " failed..", e);
+        }
+    }
+
+    void writeRow(String row) throws N2OException {
+        try {
+            writer.write(row);
+            writer.write(LINE_SEPARATOR);
+        } catch (IOException e) {
+            throw new N2OException("Writing to file " + file + " failed..", e);
+        }
+    }
+
+    /*
+    Writer.append(CharSequence) would copy the row into a new String first; the row is copied into a reused char
+    buffer instead.
+     */
+    void writeRow(StringBuilder row) throws N2OException {
+        int length = row.length();
+        if (rowBuffer.length < length) {
+            rowBuffer = new char[Math.max(length, rowBuffer.length * 2)];
+        }
+        row.getChars(0, length, rowBuffer, 0);
+        try {
+            writer.write(rowBuffer, 0, length);
+            writer.write(LINE_SEPARATOR);
+        } catch (IOException e) {
+            throw new N2OException("Writing to file " + file + " failed..", e);
+        }
+    }
+
+    @Override
+    public void close() throws N2OException {
+        try {
+            writer.close();
+        } catch (IOException e) {
+            throw new N2OException("Writing to file " + file + " failed..", e);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package ebi.spot.neo4j2owl.importer;
+
+import ebi.spot.neo4j2owl.N2OException;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes the rows of one node or relationship type into shards of at most shardSize rows, each with its own header,
+ * so that every shard can be loaded by its own LOAD CSV statement. With a shardSize of 0, all rows go into a single
+ * file named as before.
+ */
+class N2OCSVShardWriter implements AutoCloseable {
+
+    private final File dir;
+    private final String nodeclass;
+    private final String type;
+    private final String header;
+    private final int shardSize;
+    private final List<File> files = new ArrayList<>();
+    private final List<Long> rows = new ArrayList<>();
+    private N2OCSVFileWriter shard;
+    private int rowsInShard = 0;
+
+    N2OCSVShardWriter(File dir, String nodeclass, String type, String header, int shardSize) throws N2OException {
+        this.dir = dir;
+        this.nodeclass = nodeclass;
+        this.type = type;
+        this.header = header;
+        this.shardSize = shardSize;
+        // The first shard is always written, even if the type has no rows.
+        nextShard();
+    }
+
+    void writeRow(StringBuilder row) throws N2OException {
+        if (shardSize > 0 && rowsInShard >= shardSize) {
+            nextShard();
+        }
+        shard.writeRow(row);
+        rowsInShard++;
+        rows.set(rows.size() - 1, (long) rowsInShard);
+    }
+
+    private void nextShard() throws N2OException {
+        if (shard != null) {
+            shard.close();
+        }
+        File f = shardSize > 0 ? N2OUtils.constructFileHandle(dir, nodeclass, type, files.size() + 1) : N2OUtils.constructFileHandle(dir, nodeclass, type);
+        shard = new N2OCSVFileWriter(f);
+        files.add(f);
+        rows.add(0L);
+        shard.writeRow(header);
+        rowsInShard = 0;
+    }
+
+    /**
+     * @return the shards written, in order
+     */
+    List<File> getFiles() {
+        return files;
+    }
+
+    /**
+     * @return the number of rows (without header) of every shard, in the order of getFiles()
+     */
+    List<Long> getRows() {
+        return rows;
+    }
+
+    @Override
+    public void close() throws N2OException {
+        shard.close();
+    }
+}
@@ -17,6 +17,11 @@ public class N2OCSVWriter {
     private final RelationTypeCounter relationTypeCounter;
     private final N2OLog log = N2OLog.getInstance();
     private final N2OImportCSVConfig n2OImportCSVConfig = new N2OImportCSVConfig();
+    private N2ODeltaManifest manifest = null;
+    private N2ODeltaManifest previousManifest = null;
+    private N2OAdminCSVWriter adminWriter = null;
+    private final List<N2OUnwindImport> unwindImports = new ArrayList<>();
+    private final Map<String, Integer> surrogateKeys = new HashMap<>();
     public enum CSV_TYPE
     {
         NODES("nodes"), RELATIONSHIPS("relationship");
@@ -33,62 +38,309 @@ public class N2OCSVWriter {
     }
 
     void exportOntologyToCSV() throws N2OException {
+        if (N2OConfig.getInstance().isNeo4jAdminImport()) {
+            if (N2OConfig.getInstance().getDeltaManifest().isPresent()) {
+                throw new N2OException("neo4j-admin import can only load into an empty database, it can not be combined with delta_manifest.");
+            }
+            adminWriter = new N2OAdminCSVWriter(getManager(), this::computeDatatype, getImportDir());
+            adminWriter.export();
+            return;
+        }
+        Optional<String> deltaManifest = N2OConfig.getInstance().getDeltaManifest();
+        if (deltaManifest.isPresent() && N2OConfig.getInstance().isSurrogateKeys()) {
+            throw new N2OException("surrogate_keys can not be combined with delta_manifest, the nodes that are not written again would not have a key.");
+        }
+        if (deltaManifest.isPresent()) {
+            processExportForDelta(new File(deltaManifest.get()));
+        }
+        if (N2OConfig.getInstance().getLoadingStrategy() != LOADING_STRATEGY.LOAD_CSV) {
+            prepareUnwindImports();
+            return;
+        }
         processExportForNodes();
         processExportForRelationships();
     }
 
+    /*
+    Saves the manifest of this import, so that the next delta import can be compared against it. This should only
+    be done once the CSV files have been loaded into the graph.
+     */
+    public void saveDeltaManifest() throws N2OException {
+        Optional<String> deltaManifest = N2OConfig.getInstance().getDeltaManifest();
+        if (deltaManifest.isPresent() && manifest != null) {
+            manifest.save(new File(deltaManifest.get()));
+            log.log("Saved delta manifest: " + deltaManifest.get());
+        }
+    }
+
+    /*
+    The offline runner does not load the CSV files, so it saves the manifest next to the delta manifest, with the
+    PENDING_SUFFIX. It is to be renamed to the delta manifest once the CSV files have been loaded.
+     */
+    public void savePendingDeltaManifest() throws N2OException {
+        Optional<String> deltaManifest = N2OConfig.getInstance().getDeltaManifest();
+        if (deltaManifest.isPresent() && manifest != null) {
+            File pending = new File(deltaManifest.get() + N2OStatic.PENDING_SUFFIX);
+            manifest.save(pending);
+            log.log("Saved pending delta manifest: " + pending + ", rename it to " + deltaManifest.get() + " once the CSV files have been loaded.");
+        }
+    }
+
     public void exportN2OImportConfig(File fileOut) throws IOException {
         n2OImportCSVConfig.saveConfig(fileOut);
     }
 
+    /*
+    Writes the neo4j-admin import command for the files written in neo4j_admin_import mode, if any.
+     */
+    public void exportNeo4jAdminImportCommand(File fileOut) throws IOException {
+        if (adminWriter != null) {
+            adminWriter.exportImportCommand(new File(fileOut, N2OStatic.NEO4J_ADMIN_IMPORT_SCRIPT));
+        }
+    }
+
     public N2OImportCSVConfig getCSVImportConfig() {
         return n2OImportCSVConfig.clone();
     }
 
+    List<N2OUnwindImport> getUnwindImports() {
+        return unwindImports;
+    }
+
+    /*
+    For the unwind and core_api loading strategies, nodes and relationships are not written to CSV files, but passed to
+    the database as typed values. Delta statements are still written as CSV files, they run before the nodes and
+    relationships are loaded.
+     */
+    private void prepareUnwindImports() {
+        N2OPropertyTypes propertyTypes = new N2OPropertyTypes(this::computeDatatype);
+        Map<String, List<OWLEntity>> entities = indexEntitiesByType();
+        for (String type : entities.keySet()) {
+            List<OWLEntity> rows = entities.get(type);
+            String cypher = "UNWIND $rows AS row\n" +
+                    "MERGE (n:Entity { iri: row.iri }) SET n += row.props SET n :" + type;
+            unwindImports.add(new N2OUnwindImport(cypher, CSV_TYPE.NODES, type, rows.size(), i -> {
+                Map<String, Object> row = new HashMap<>();
+                row.put("iri", getNodeIndex().get(rows.get(i)).getIri());
+                row.put("props", propertyTypes.toProperties(getNodeProperties(rows.get(i))));
+                return row;
+            }));
+        }
+        N2ORelationshipStore store = getRelationshipStore();
+        Map<String, int[]> relationships = indexRelationshipsByType();
+        for (String type : relationships.keySet()) {
+            int[] rows = relationships.get(type);
+            String cypher = "UNWIND $rows AS row\n" +
+                    "MATCH (s:Entity { iri: row.start}),(e:Entity { iri: row.end})\n" +
+                    "MERGE (s)-[r:" + type + "]->(e) SET r += row.props";
+            unwindImports.add(new N2OUnwindImport(cypher, CSV_TYPE.RELATIONSHIPS, type, rows.length, i -> {
+                Map<String, Object> row = new HashMap<>();
+                row.put("start", getManager().getNodeById(store.getStart(rows[i])).getIri());
+                row.put("end", getManager().getNodeById(store.getEnd(rows[i])).getIri());
+                row.put("props", propertyTypes.toProperties(store.getProperties(rows[i])));
+                return row;
+            }));
+        }
+    }
+
     private void processExportForRelationships() throws N2OException {
-        Map<String, List<N2OOWLRelationship>> relationships = indexRelationshipsByType();
-        Map<String, List<String>> dataout_rel = prepareRelationCSVsForExport(relationships);
-        prepareCyperQueries(dataout_rel, CSV_TYPE.RELATIONSHIPS);
-        N2OUtils.writeToFile(getImportDir(), dataout_rel, CSV_TYPE.RELATIONSHIPS);
+        Map<String, int[]> relationships = indexRelationshipsByType();
+        List<Map<String, List<File>>> partitions = writeRelationCSVs(relationships);
+        for (int p = 0; p < partitions.size(); p++) {
+            prepareCyperQueries(partitions.get(p), CSV_TYPE.RELATIONSHIPS, partitions.size() > 1 ? p : N2OImportCSVConfig.NO_PARTITION);
+        }
     }
 
     private void processExportForNodes() throws N2OException {
+        if (N2OConfig.getInstance().isMultiLabelNodes()) {
+            processExportForMultiLabelNodes();
+            return;
+        }
         Map<String, List<OWLEntity>> entities = indexEntitiesByType();
-        Map<String, List<String>> dataout = prepareNodeCSVsForExport(entities);
-        prepareCyperQueries(dataout, CSV_TYPE.NODES);
-        N2OUtils.writeToFile(dir, dataout, CSV_TYPE.NODES);
+        Map<String, List<File>> shards = writeNodeCSVs(entities);
+        prepareCyperQueries(shards, CSV_TYPE.NODES);
+    }
+
+    /*
+    With multi_label_nodes, every node is written exactly once, with all its labels, instead of once per label: nodes
+    are merged by iri (punned entities share a node) and grouped by their label set, so that every file only has the
+    columns its nodes use and a single statement sets all labels.
+     */
+    private void processExportForMultiLabelNodes() throws N2OException {
+        Map<String, Set<String>> labels = new LinkedHashMap<>();
+        Map<String, Map<String, Object>> properties = new HashMap<>();
+        Map<String, N2OEntity> nodes = new HashMap<>();
+        for (OWLEntity e : getNodeProperties().keySet()) {
+            Optional<N2OEntity> oe = getManager().getNode(e);
+            // like the per label files, nodes without labels are not written
+            if (oe.isPresent() && !oe.get().getTypes().isEmpty() && !isUnchangedNode(e)) {
+                String iri = oe.get().getIri();
+                labels.computeIfAbsent(iri, k -> new TreeSet<>()).addAll(oe.get().getTypes());
+                properties.computeIfAbsent(iri, k -> new HashMap<>()).putAll(getNodeProperties(e));
+                nodes.putIfAbsent(iri, oe.get());
+            }
+        }
+        Map<Set<String>, List<String>> labelSets = new LinkedHashMap<>();
+        labels.forEach((iri, l) -> labelSets.computeIfAbsent(l, k -> new ArrayList<>()).add(iri));
+
+        StringBuilder sb = new StringBuilder();
+        int fileIndex = 0;
+        for (Map.Entry<Set<String>, List<String>> labelSet : labelSets.entrySet()) {
+            Set<String> columnSet = new TreeSet<>();
+            labelSet.getValue().forEach(iri -> columnSet.addAll(properties.get(iri).keySet()));
+            List<String> columns_sorted = new ArrayList<>(columnSet);
+            String labelCell = String.join(";", labelSet.getKey());
+            List<File> files;
+            try (N2OCSVShardWriter csvout = new N2OCSVShardWriter(getImportDir(), CSV_TYPE.NODES.name, "multilabel_" + (++fileIndex), constructHeaderForEntities(columns_sorted), N2OConfig.getInstance().getCSVShardSize())) {
+                files = csvout.getFiles();
+                for (String iri : labelSet.getValue()) {
+                    sb.setLength(0);
+                    writeCSVRowFromColumns(columns_sorted, sb, properties.get(iri));
+                    sb.append(labelCell);
+                    if (N2OConfig.getInstance().isSurrogateKeys()) {
+                        sb.append(",").append(getSurrogateKey(nodes.get(iri)));
+                    }
+                    csvout.writeRow(sb);
+                }
+                recordRows(csvout);
+            }
+            columnSet.remove(N2OStatic.ATT_IRI);
+            for (File f : files) {
+                this.n2OImportCSVConfig.putImport(constructCypherQueryForNodes(String.join(":", labelSet.getKey()), columnSet, f), f.getName());
+            }
+        }
+    }
 
+    /*
+    Compares the current model with the manifest of the previous import. Only added and changed nodes and
+    relationships are written to the regular CSV files; removed nodes, stale properties and labels of changed nodes
+    and removed or changed relationships are deleted by targeted statements that run before the regular ones.
+     */
+    private void processExportForDelta(File manifestFile) throws N2OException {
+        previousManifest = N2ODeltaManifest.load(manifestFile);
+        manifest = N2ODeltaManifest.fromModel(getManager());
+        Map<String, List<String>> dataout = new LinkedHashMap<>();
+        Map<String, String> cypher = new HashMap<>();
+
+        List<String> removedNodes = manifest.getRemovedNodes(previousManifest);
+        List<String> changedNodes = manifest.getChangedNodes(previousManifest);
+        Map<String, List<String>> removedLabels = manifest.getRemovedLabels(previousManifest);
+        Map<String, List<String[]>> removedRelationships = manifest.getRemovedRelationships(previousManifest);
+        log.log("Delta: " + removedNodes.size() + " removed nodes, " + changedNodes.size() + " changed nodes, " + removedRelationships.values().stream().mapToInt(List::size).sum() + " removed or changed relationships.");
+
+        addDeltaCSV(dataout, cypher, "delta_removed", singleColumnCSV(N2OStatic.ATT_IRI, removedNodes),
+                "MATCH (n:Entity { iri: cl.iri }) DETACH DELETE n");
+        addDeltaCSV(dataout, cypher, "delta_changed", singleColumnCSV(N2OStatic.ATT_IRI, changedNodes),
+                "MATCH (n:Entity { iri: cl.iri }) SET n = { iri: cl.iri }");
+        for (String label : removedLabels.keySet()) {
+            addDeltaCSV(dataout, cypher, "delta_unlabel_" + label, singleColumnCSV(N2OStatic.ATT_IRI, removedLabels.get(label)),
+                    "MATCH (n:Entity { iri: cl.iri }) REMOVE n:" + label);
+        }
+        writeDeltaFiles(dataout, cypher, CSV_TYPE.NODES);
+        dataout.clear();
+        cypher.clear();
+
+        for (String type : removedRelationships.keySet()) {
+            List<String> csvout = new ArrayList<>();
+            csvout.add("start,end");
+            for (String[] rel : removedRelationships.get(type)) {
+                csvout.add(N2OCSVCellEncoder.encodeCell(rel[0]) + "," + N2OCSVCellEncoder.encodeCell(rel[1]));
+            }
+            addDeltaCSV(dataout, cypher, "delta_" + type, csvout,
+                    "MATCH (s:Entity { iri: cl.start})-[r:" + type + "]->(e:Entity { iri: cl.end}) DELETE r");
+        }
+        writeDeltaFiles(dataout, cypher, CSV_TYPE.RELATIONSHIPS);
     }
 
-    private void prepareCyperQueries(Map<String, List<String>> dataout, CSV_TYPE csv_type) {
-        for(String type: dataout.keySet()) {
+    private void addDeltaCSV(Map<String, List<String>> dataout, Map<String, String> cypher, String type, List<String> csvout, String statement) {
+        if (csvout.size() > 1) {
+            dataout.put(type, csvout);
+            cypher.put(type, statement);
+        }
+    }
+
+    private void writeDeltaFiles(Map<String, List<String>> dataout, Map<String, String> cypher, CSV_TYPE csv_type) throws N2OException {
+        for (String type : dataout.keySet()) {
             File f = N2OUtils.constructFileHandle(dir, csv_type.name, type);
-            String cypher = constructCypherQuery(csv_type, f);
-            this.n2OImportCSVConfig.putImport(cypher, f.getName());
+            String statement = "USING PERIODIC COMMIT " + N2OConfig.getInstance().getPeriodicCommit() + "\n" +
+                    "LOAD CSV WITH HEADERS FROM \"file:/" + f.getName() + "\" AS cl\n" + cypher.get(type);
+            this.n2OImportCSVConfig.putImport(statement, f.getName());
+            this.n2OImportCSVConfig.putRows(f.getName(), dataout.get(type).size() - 1);
         }
+        N2OUtils.writeToFile(dir, dataout, csv_type);
     }
 
-    private String constructCypherQuery(CSV_TYPE csv_type, File f) {
-        String filename = f.getName();
+    private List<String> singleColumnCSV(String header, List<String> values) {
+        List<String> csvout = new ArrayList<>();
+        csvout.add(header);
+        values.forEach(v -> csvout.add(N2OCSVCellEncoder.encodeCell(v)));
+        return csvout;
+    }
 
-        String type = filename.substring(filename.indexOf("_") + 1).replaceAll(N2OStatic.CSV_EXTENSION, "");
-        Integer periodic_commit = N2OConfig.getInstance().getPeriodicCommit();
-        String cypher = "USING PERIODIC COMMIT "+periodic_commit+"\n" +
-                "LOAD CSV WITH HEADERS FROM \"file:/"+filename+"\" AS cl\n";
+    private boolean isUnchangedNode(OWLEntity e) {
+        return manifest != null && !manifest.isNodeChanged(getNodeIndex().get(e).getIri(), previousManifest);
+    }
+
+    private boolean isUnchangedRelationship(N2ORelationshipStore store, int r) {
+        return manifest != null && !manifest.isRelationshipChanged(store.getType(r),
+                getManager().getNodeById(store.getStart(r)).getIri(), getManager().getNodeById(store.getEnd(r)).getIri(), previousManifest);
+    }
+
+    /*
+    Every shard of a type gets its own statement.
+     */
+    private void prepareCyperQueries(Map<String, List<File>> shards, CSV_TYPE csv_type) {
+        prepareCyperQueries(shards, csv_type, N2OImportCSVConfig.NO_PARTITION);
+    }
+
+    private void prepareCyperQueries(Map<String, List<File>> shards, CSV_TYPE csv_type, int partition) {
+        for(String type: shards.keySet()) {
+            for (File f : shards.get(type)) {
+                String cypher = constructCypherQuery(csv_type, type, f);
+                this.n2OImportCSVConfig.putImport(cypher, f.getName(), partition);
+            }
+        }
+    }
+
+    private String constructCypherQuery(CSV_TYPE csv_type, String type, File f) {
+        String cypher = constructLoadCSVClause(f);
         switch(csv_type) {
             case RELATIONSHIPS:
-                cypher+="MATCH (s:Entity { iri: cl.start}),(e:Entity { iri: cl.end})\n" +
-                        "MERGE (s)-[r:" + type + "]->(e) " + uncomposedSetClauses("cl", "r", manager.getHeadersForRelationships(type));
+                if (N2OConfig.getInstance().isSurrogateKeys()) {
+                    cypher+="MATCH (s:Entity { " + N2OStatic.ATT_SURROGATE_KEY + ": toInteger(cl.start)}),(e:Entity { " + N2OStatic.ATT_SURROGATE_KEY + ": toInteger(cl.end)})\n";
+                } else {
+                    cypher+="MATCH (s:Entity { iri: cl.start}),(e:Entity { iri: cl.end})\n";
+                }
+                cypher+="MERGE (s)-[r:" + type + "]->(e) " + uncomposedSetClauses("cl", "r", manager.getHeadersForRelationships(type));
                 break;
             case NODES:
-                cypher+= "MERGE (n:Entity { iri: cl.iri }) " + uncomposedSetClauses("cl", "n", manager.getHeadersForNodes(type)) + " SET n :" + type;
-                break;
+                return constructCypherQueryForNodes(type, manager.getHeadersForNodes(type), f);
             default:
                 throw new IllegalStateException("Unexpected value: " + csv_type);
         }
         return cypher;
     }
 
+    /*
+    labels are the labels to set, separated by colons
+     */
+    private String constructCypherQueryForNodes(String labels, Set<String> headers, File f) {
+        String cypher = constructLoadCSVClause(f);
+        cypher+= "MERGE (n:Entity { iri: cl.iri }) " + uncomposedSetClauses("cl", "n", headers) + " SET n :" + labels;
+        if (N2OConfig.getInstance().isSurrogateKeys()) {
+            cypher+= " SET n." + N2OStatic.ATT_SURROGATE_KEY + " = toInteger(cl." + N2OStatic.ATT_SURROGATE_KEY + ")";
+        }
+        return cypher;
+    }
+
+    private String constructLoadCSVClause(File f) {
+        // LOAD CSV decompresses .csv.gz files itself
+        String filename = f.getName();
+        Integer periodic_commit = N2OConfig.getInstance().getPeriodicCommit();
+        return "USING PERIODIC COMMIT "+periodic_commit+"\n" +
+                "LOAD CSV WITH HEADERS FROM \"file:/"+filename+"\" AS cl\n";
+    }
+
     private String computeDatatype(String h) {
         Optional<String> dt_config = N2OConfig.getInstance().slToDatatype(h);
         if(dt_config.isPresent()) {
@@ -150,12 +402,8 @@ public class N2OCSVWriter {
         return getManager().getNodeIndex();
     }
 
-    private Set<N2OOWLRelationship> getN2OWLRelationships() {
-        return getManager().getN2OWLRelationships();
-    }
-
-    private Map<String, Object> getRelationshipProperties(N2OOWLRelationship e) {
-        return getManager().getRelationshipProperties(e);
+    private N2ORelationshipStore getRelationshipStore() {
+        return getManager().getRelationshipStore();
     }
 
     private Map<String, Object> getNodeProperties(OWLEntity e) {
@@ -166,55 +414,103 @@ public class N2OCSVWriter {
      *
      * @return Map of relationship types (ids) and all corresponding Relationship. This will be imported one by one into neo.
      */
-    private Map<String, List<N2OOWLRelationship>> indexRelationshipsByType() {
-        Map<String, List<N2OOWLRelationship>> relationships = new HashMap<>();
-        for (N2OOWLRelationship e : getN2OWLRelationships()) {
-            String type = e.getRelationId();
-            getManager().indexRelationshipColumns(e);
-            if (!relationships.containsKey(type)) {
-                relationships.put(type, new ArrayList<>());
+    private Map<String, int[]> indexRelationshipsByType() {
+        N2ORelationshipStore store = getRelationshipStore();
+        Map<String, int[]> relationships = new HashMap<>();
+        for (Map.Entry<String, int[]> e : store.indexByType().entrySet()) {
+            int[] rels = manifest == null ? e.getValue() : Arrays.stream(e.getValue()).filter(r -> !isUnchangedRelationship(store, r)).toArray();
+            if (rels.length > 0) {
+                relationships.put(e.getKey(), rels);
+                getPropertyColumns().computeIfAbsent(e.getKey(), k -> new HashSet<>()).addAll(store.getPropertyKeys(rels));
             }
-            relationships.get(type).add(e);
         }
         return relationships;
     }
 
 
 
-    private Map<String, List<String>> prepareRelationCSVsForExport(Map<String, List<N2OOWLRelationship>> relationships) {
+    /*
+    The rows are streamed to the CSV files of the relationship types one file at a time. With relationship_partitions
+    > 1, the relationships of every type are split by start node: all relationships of a start node, of any type, end
+    up in the same partition (relationship_<TYPE>.p<k>.csv), so that the partitions can be loaded concurrently. The
+    partition is chosen by the iri of the start node, not by its entity: a punned iri is a single node in the graph,
+    but a different entity for every one of its types.
+     */
+    private List<Map<String, List<File>>> writeRelationCSVs(Map<String, int[]> relationships) throws N2OException {
         Map<String,Set<String>> prop_columns = getPropertyColumns();
-        Map<OWLEntity, N2OEntity> nodeindex = getNodeIndex();
-        Map<String, List<String>> dataout = new HashMap<>();
+        N2ORelationshipStore store = getRelationshipStore();
+        int partitions = N2OConfig.getInstance().getRelationshipPartitions();
+        List<Map<String, List<File>>> shards = new ArrayList<>();
+        for (int p = 0; p < partitions; p++) {
+            shards.add(new LinkedHashMap<>());
+        }
+        StringBuilder sb = new StringBuilder();
         for (String type : prop_columns.keySet()) {
-            List<String> csvout = new ArrayList<>();
             List<String> columns_sorted = new ArrayList<>(prop_columns.get(type));
             Collections.sort(columns_sorted);
-            String headerrow = constructHeaderForRelationships(columns_sorted);
-            csvout.add(headerrow);
-            for (N2OOWLRelationship e : relationships.get(type)) {
-                StringBuilder sb = new StringBuilder();
-                Map<String, Object> rec = getRelationshipProperties(e);
-                writeCSVRowFromColumns(columns_sorted, sb, rec);
-                sb.append(nodeindex.get(e.getStart()).getIri()).append(",");
-                sb.append(nodeindex.get(e.getEnd()).getIri()).append(",");
-                //sb.append(e.getRelationId());
-                String s = sb.toString();
-                csvout.add(s.substring(0, s.length() - 1));
+            String header = constructHeaderForRelationships(columns_sorted);
+            N2OCSVShardWriter[] csvout = new N2OCSVShardWriter[partitions];
+            try {
+                for (int p = 0; p < partitions; p++) {
+                    String filetype = partitions > 1 ? type + ".p" + p : type;
+                    csvout[p] = new N2OCSVShardWriter(getImportDir(), CSV_TYPE.RELATIONSHIPS.name, filetype, header, N2OConfig.getInstance().getCSVShardSize());
+                    shards.get(p).put(type, csvout[p].getFiles());
+                }
+                for (int e : relationships.get(type)) {
+                    sb.setLength(0);
+                    Map<String, Object> rec = store.getProperties(e);
+                    writeCSVRowFromColumns(columns_sorted, sb, rec);
+                    N2OEntity start = getManager().getNodeById(store.getStart(e));
+                    appendNodeReference(sb, start);
+                    sb.append(",");
+                    appendNodeReference(sb, getManager().getNodeById(store.getEnd(e)));
+                    csvout[Math.floorMod(start.getIri().hashCode(), partitions)].writeRow(sb);
+                }
+                for (N2OCSVShardWriter w : csvout) {
+                    recordRows(w);
+                }
+            } finally {
+                for (N2OCSVShardWriter w : csvout) {
+                    if (w != null) {
+                        w.close();
+                    }
+                }
             }
-            dataout.put(type, csvout);
         }
-        return dataout;
+        return shards;
     }
 
 
 
+    private void recordRows(N2OCSVShardWriter csvout) {
+        for (int i = 0; i < csvout.getFiles().size(); i++) {
+            this.n2OImportCSVConfig.putRows(csvout.getFiles().get(i).getName(), csvout.getRows().get(i));
+        }
+    }
+
+    private void appendNodeReference(StringBuilder sb, N2OEntity node) {
+        if (N2OConfig.getInstance().isSurrogateKeys()) {
+            sb.append(getSurrogateKey(node));
+        } else {
+            sb.append(node.getIri());
+        }
+    }
+
+    /*
+    With surrogate_keys, relationship rows refer to their nodes by a small integer instead of the iri: the id of the
+    first N2O node with that iri (punned entities share an iri, and therefore a node and key).
+     */
+    private int getSurrogateKey(N2OEntity node) {
+        return surrogateKeys.computeIfAbsent(node.getIri(), k -> node.getId());
+    }
+
     private void writeCSVRowFromColumns(List<String> columns_sorted, StringBuilder sb, Map<String, Object> rec) {
         for (String column : columns_sorted) {
-            String value = "";
-            if (rec.containsKey(column)) {
-                value = csvCellValue(rec.get(column));
+            Object value = rec.get(column);
+            if (value != null) {
+                N2OCSVCellEncoder.appendCell(sb, value);
             }
-            sb.append(value).append(",");
+            sb.append(",");
         }
     }
 
@@ -225,7 +521,7 @@ public class N2OCSVWriter {
         for (OWLEntity e : node_properties.keySet()) {
             //System.out.println(e.getIRI());
             Optional<N2OEntity> oe = getManager().getNode(e);
-            if (oe.isPresent()) {
+            if (oe.isPresent() && !isUnchangedNode(e)) {
                 N2OEntity entity = oe.get();
 
                 for (String type : entity.getTypes()) {
@@ -244,63 +540,29 @@ public class N2OCSVWriter {
         return entities;
     }
 
-    private String csvCellValue(Object o) {
-        // {\"X\":660,\"Y\":1290,\"Z\":382}
-        //System.out.println("csvCellValue()");
-        String val = o.toString();
-        //System.out.println(raw_value);
-       /*
-        String json = new String(JsonStringEncoder.getInstance().quoteAsString(raw_value));
-
-        if(!raw_value.equals(json)) {
-            System.out.println("JSON DIFFERENT: " + json);
-        }
-        String val = json;
-        */
-        // see https://neo4j.com/developer/kb/space-in-import-filename-for-load-csv/
-
-        //
-            if (val.contains("\"")) {
-                //String orig = val;
-                //val = val.replaceAll("(?<![\\\\])[\"]","\"\"");
-                //val = val.replaceAll("[\\\\]+[\"]","\\\\\\\\\"\"");
-
-                val = val.replaceAll("[\"]","\"\"");
-                val = val.replaceAll("[\\\\]","\\\\\\\\");
-                /*
-                if(!orig.equals(val)) {
-                    System.out.println("**************");
-                    System.out.println(orig);
-                    System.out.println(val);
-                }
-                */
-        }
-
-
-        return "\"" + val + "\"";
-    }
-
-    private Map<String, List<String>> prepareNodeCSVsForExport(Map<String, List<OWLEntity>> entities) {
-        Map<String, List<String>> dataout = new HashMap<>();
+    private Map<String, List<File>> writeNodeCSVs(Map<String, List<OWLEntity>> entities) throws N2OException {
         Map<String,Set<String>> columns = getNodeColumns();
+        Map<String, List<File>> shards = new LinkedHashMap<>();
+        StringBuilder sb = new StringBuilder();
         for (String type : columns.keySet()) {
-            List<String> csvout = new ArrayList<>();
             List<String> columns_sorted = new ArrayList<>(columns.get(type));
             Collections.sort(columns_sorted);
-            csvout.add(constructHeaderForEntities(columns_sorted));
-
-            for (OWLEntity e : entities.get(type)) {
-                StringBuilder sb = new StringBuilder();
-                Map<String, Object> rec = getNodeProperties(e);
-                writeCSVRowFromColumns(columns_sorted, sb, rec);
-                sb.append(type);
-                String s = sb.toString();
-                //System.out.println("KKA"+s);
-                csvout.add(s);//.substring(0, s.length() - 1)
+            try (N2OCSVShardWriter csvout = new N2OCSVShardWriter(getImportDir(), CSV_TYPE.NODES.name, type, constructHeaderForEntities(columns_sorted), N2OConfig.getInstance().getCSVShardSize())) {
+                shards.put(type, csvout.getFiles());
+                for (OWLEntity e : entities.get(type)) {
+                    sb.setLength(0);
+                    Map<String, Object> rec = getNodeProperties(e);
+                    writeCSVRowFromColumns(columns_sorted, sb, rec);
+                    sb.append(type);
+                    if (N2OConfig.getInstance().isSurrogateKeys()) {
+                        sb.append(",").append(getSurrogateKey(getNodeIndex().get(e)));
+                    }
+                    csvout.writeRow(sb);
+                }
+                recordRows(csvout);
             }
-            dataout.put(type, csvout);
         }
-        return dataout;
+        return shards;
     }
 
     private String constructHeaderForEntities(List<String> columns_sorted) {
@@ -309,6 +571,9 @@ public class N2OCSVWriter {
             sb.append(column).append(",");
         }
         sb.append(":LABEL");
+        if (N2OConfig.getInstance().isSurrogateKeys()) {
+            sb.append(",").append(N2OStatic.ATT_SURROGATE_KEY);
+        }
         return sb.toString();
     }
 
@@ -0,0 +1,210 @@
+package ebi.spot.neo4j2owl.importer;
+
+import com.google.common.hash.Hashing;
+import ebi.spot.neo4j2owl.N2OException;
+import org.apache.commons.io.FileUtils;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.semanticweb.owlapi.model.OWLEntity;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+
+/**
+ * A fingerprint of the N2O model of an import: a hash of the labels and properties of every node (by iri) and a hash
+ * of the properties of every relationship (by type, start and end iri). Comparing the manifest of the current import
+ * with the one saved by the previous import tells which nodes and relationships have to be written, and which have
+ * to be deleted from the graph.
+ */
+class N2ODeltaManifest {
+
+    private static final String RELATIONSHIP_KEY_SEPARATOR = " ";
+
+    private final Map<String, String> nodeHashes = new HashMap<>();
+    private final Map<String, Set<String>> nodeLabels = new HashMap<>();
+    private final Map<String, Map<String, String>> relationshipHashes = new HashMap<>();
+
+    private N2ODeltaManifest() {
+    }
+
+    static N2ODeltaManifest fromModel(N2OImportManager manager) {
+        N2ODeltaManifest manifest = new N2ODeltaManifest();
+
+        // Punned entities share an iri and therefore a node, so their labels and properties are pooled.
+        Map<String, Set<String>> nodeContent = new HashMap<>();
+        for (Map.Entry<OWLEntity, Map<String, Object>> e : manager.getNodeProperties().entrySet()) {
+            // getNode() also applies the dynamic node labels
+            Optional<N2OEntity> oe = manager.getNode(e.getKey());
+            if (!oe.isPresent()) {
+                continue;
+            }
+            N2OEntity entity = oe.get();
+            String iri = entity.getIri();
+            manifest.nodeLabels.computeIfAbsent(iri, k -> new TreeSet<>()).addAll(entity.getTypes());
+            Set<String> content = nodeContent.computeIfAbsent(iri, k -> new TreeSet<>());
+            entity.getTypes().forEach(t -> content.add(":" + t));
+            e.getValue().forEach((k, v) -> content.add(k + "=" + v));
+        }
+        nodeContent.forEach((iri, content) -> manifest.nodeHashes.put(iri, hash(content)));
+
+        Map<String, Map<String, Set<String>>> relationshipContent = new HashMap<>();
+        N2ORelationshipStore store = manager.getRelationshipStore();
+        for (int r = 0; r < store.size(); r++) {
+            String key = relationshipKey(manager.getNodeById(store.getStart(r)).getIri(), manager.getNodeById(store.getEnd(r)).getIri());
+            Set<String> content = relationshipContent.computeIfAbsent(store.getType(r), k -> new HashMap<>()).computeIfAbsent(key, k -> new TreeSet<>());
+            store.getProperties(r).forEach((k, v) -> content.add(k + "=" + v));
+        }
+        relationshipContent.forEach((type, rels) -> {
+            Map<String, String> hashes = new HashMap<>();
+            rels.forEach((key, content) -> hashes.put(key, hash(content)));
+            manifest.relationshipHashes.put(type, hashes);
+        });
+        return manifest;
+    }
+
+    /**
+     * @return the manifest saved in file, or an empty manifest if there is none (the first import is a full import)
+     */
+    static N2ODeltaManifest load(File file) throws N2OException {
+        N2ODeltaManifest manifest = new N2ODeltaManifest();
+        if (!file.isFile()) {
+            return manifest;
+        }
+        try {
+            JSONObject json = new JSONObject(FileUtils.readFileToString(file, StandardCharsets.UTF_8));
+            JSONObject nodes = json.getJSONObject("nodes");
+            for (String iri : nodes.keySet()) {
+                JSONObject node = nodes.getJSONObject(iri);
+                manifest.nodeHashes.put(iri, node.getString("hash"));
+                Set<String> labels = new TreeSet<>();
+                node.getJSONArray("labels").forEach(l -> labels.add(l.toString()));
+                manifest.nodeLabels.put(iri, labels);
+            }
+            JSONObject relationships = json.getJSONObject("relationships");
+            for (String type : relationships.keySet()) {
+                JSONObject rels = relationships.getJSONObject(type);
+                Map<String, String> hashes = new HashMap<>();
+                rels.keySet().forEach(key -> hashes.put(key, rels.getString(key)));
+                manifest.relationshipHashes.put(type, hashes);
+            }
+        } catch (IOException | RuntimeException e) {
+            throw new N2OException("Delta manifest " + file + " could not be read..", e);
+        }
+        return manifest;
+    }
+
+    void save(File file) throws N2OException {
+        JSONObject nodes = new JSONObject();
+        nodeHashes.forEach((iri, hash) -> {
+            JSONObject node = new JSONObject();
+            node.put("hash", hash);
+            node.put("labels", new JSONArray(nodeLabels.get(iri)));
+            nodes.put(iri, node);
+        });
+        JSONObject relationships = new JSONObject();
+        relationshipHashes.forEach((type, hashes) -> relationships.put(type, new JSONObject(hashes)));
+        JSONObject json = new JSONObject();
+        json.put("nodes", nodes);
+        json.put("relationships", relationships);
+
+        File tmp = new File(file.getPath() + ".tmp");
+        try {
+            FileUtils.writeStringToFile(tmp, json.toString(), StandardCharsets.UTF_8);
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new N2OException("Delta manifest " + file + " could not be saved..", e);
+        }
+    }
+
+    /**
+     * @return true if the node is new or its labels or properties differ from the previous import
+     */
+    boolean isNodeChanged(String iri, N2ODeltaManifest previous) {
+        return !Objects.equals(nodeHashes.get(iri), previous.nodeHashes.get(iri));
+    }
+
+    boolean isRelationshipChanged(String type, String start, String end, N2ODeltaManifest previous) {
+        String key = relationshipKey(start, end);
+        return !Objects.equals(relationshipHashes.getOrDefault(type, Collections.emptyMap()).get(key),
+                previous.relationshipHashes.getOrDefault(type, Collections.emptyMap()).get(key));
+    }
+
+    /**
+     * @return nodes of the previous import that no longer exist
+     */
+    List<String> getRemovedNodes(N2ODeltaManifest previous) {
+        List<String> removed = new ArrayList<>();
+        for (String iri : previous.nodeHashes.keySet()) {
+            if (!nodeHashes.containsKey(iri)) {
+                removed.add(iri);
+            }
+        }
+        Collections.sort(removed);
+        return removed;
+    }
+
+    /**
+     * @return nodes that exist in both imports, but whose labels or properties have changed
+     */
+    List<String> getChangedNodes(N2ODeltaManifest previous) {
+        List<String> changed = new ArrayList<>();
+        for (String iri : nodeHashes.keySet()) {
+            if (previous.nodeHashes.containsKey(iri) && isNodeChanged(iri, previous)) {
+                changed.add(iri);
+            }
+        }
+        Collections.sort(changed);
+        return changed;
+    }
+
+    /**
+     * @return for every label, the changed nodes that lost it
+     */
+    Map<String, List<String>> getRemovedLabels(N2ODeltaManifest previous) {
+        Map<String, List<String>> removed = new HashMap<>();
+        for (String iri : getChangedNodes(previous)) {
+            for (String label : previous.nodeLabels.get(iri)) {
+                if (!nodeLabels.get(iri).contains(label)) {
+                    removed.computeIfAbsent(label, k -> new ArrayList<>()).add(iri);
+                }
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * @return for every relationship type, the start and end iris of the relationships of the previous import that
+     * no longer exist or whose properties have changed; changed relationships are deleted and written again.
+     */
+    Map<String, List<String[]>> getRemovedRelationships(N2ODeltaManifest previous) {
+        Map<String, List<String[]>> removed = new HashMap<>();
+        previous.relationshipHashes.forEach((type, hashes) -> {
+            Map<String, String> current = relationshipHashes.getOrDefault(type, Collections.emptyMap());
+            List<String> keys = new ArrayList<>();
+            for (String key : hashes.keySet()) {
+                if (!hashes.get(key).equals(current.get(key))) {
+                    keys.add(key);
+                }
+            }
+            if (!keys.isEmpty()) {
+                Collections.sort(keys);
+                List<String[]> rels = new ArrayList<>();
+                keys.forEach(key -> rels.add(key.split(RELATIONSHIP_KEY_SEPARATOR, 2)));
+                removed.put(type, rels);
+            }
+        });
+        return removed;
+    }
+
+    private static String relationshipKey(String start, String end) {
+        return start + RELATIONSHIP_KEY_SEPARATOR + end;
+    }
+
+    private static String hash(Set<String> content) {
+        return Hashing.murmur3_128().hashString(String.join("\n", content), StandardCharsets.UTF_8).toString();
+    }
+}
@@ -5,7 +5,6 @@ import ebi.spot.neo4j2owl.N2OStatic;
 import org.semanticweb.owlapi.model.OWLAnnotationProperty;
 import org.semanticweb.owlapi.model.OWLEntity;
 import org.semanticweb.owlapi.model.OWLObjectProperty;
-import org.semanticweb.owlapi.model.OWLOntology;
 
 import java.util.HashMap;
 import java.util.HashSet;
@@ -14,28 +13,33 @@ import java.util.Set;
 
 public class N2OEntity {
     private final String iri;
-    private final String safe_label;
-    private final String qualified_safe_label;
-    private final String label;
+    private String safe_label;
+    private String qualified_safe_label;
+    private String label;
     private final Set<String> types;
     private final String short_form;
     private final String curie;
     private final OWLEntity entity;
+    private int id = -1;
 
 
-    N2OEntity(OWLEntity e, OWLOntology o, IRIManager curies) {
+    N2OEntity(OWLEntity e, N2OAxiomIndex index, IRIManager curies) {
         iri = e.getIRI().toString();
-        safe_label = curies.getSafeLabel(e,o);
-        label = curies.getLabel(e,o);
+        entity = e;
+        setLabel(curies.getLabel(e,index), curies);
         types = new HashSet<>();
         types.add(N2OStatic.getNeoType(e));
         if(N2OConfig.getInstance().isAddPropertyLabel() && N2OStatic.isPropertyType(e)) {
             types.add(N2OStatic.NODETYPE_PROPERTY);
         }
-        qualified_safe_label = curies.getQualifiedSafeLabel(e,o);
         short_form = curies.getShortForm(e.getIRI());
         curie = curies.getCurie(e);
-        entity = e;
+    }
+
+    void setLabel(String label, IRIManager curies) {
+        this.label = label;
+        this.safe_label = curies.getSafeLabel(label);
+        this.qualified_safe_label = curies.getQualifiedSafeLabel(safe_label, entity.getIRI());
     }
 
     Map<String, Object> getNodeBuiltInMetadataAsMap() {
@@ -94,6 +98,17 @@ public class N2OEntity {
         return entity;
     }
 
+    /*
+    Dense node id, assigned when the node is added to the import manager.
+     */
+    int getId() {
+        return id;
+    }
+
+    void setId(int id) {
+        this.id = id;
+    }
+
     String getEntityType() {
         if (getEntity() instanceof OWLAnnotationProperty) {
             return "Annotation";
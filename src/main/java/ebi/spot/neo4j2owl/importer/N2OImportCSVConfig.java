@@ -15,19 +15,27 @@ import java.util.Map;
 
 public class N2OImportCSVConfig {
     private List<N2OCSVImport> importList = new ArrayList<>();
+    private Map<String, Long> rows = new HashMap<>();
 
     private static final String CSV_CONFIG_ELEMENT_ROOT="statements";
-    private static final String CSV_CONFIG_ELEMENT_CYPHER_QUERY="cql";
-    private static final String CSV_CONFIG_ELEMENT_CSV_FILENAME="csv_file";
+    static final String CSV_CONFIG_ELEMENT_CYPHER_QUERY="cql";
+    static final String CSV_CONFIG_ELEMENT_CSV_FILENAME="csv_file";
+    static final int NO_PARTITION = -1;
 
 
-    class N2OCSVImport {
+    public class N2OCSVImport {
         private final String cypherQuery;
         private final String csvFilename;
+        private final int partition;
 
         N2OCSVImport(String cypherQuery, String csvFilename) {
+            this(cypherQuery, csvFilename, NO_PARTITION);
+        }
+
+        N2OCSVImport(String cypherQuery, String csvFilename, int partition) {
             this.cypherQuery = cypherQuery;
             this.csvFilename = csvFilename;
+            this.partition = partition;
         }
 
         public String getCypherQuery() {
@@ -37,11 +45,19 @@ public class N2OImportCSVConfig {
         public String getCsvFilename() {
             return csvFilename;
         }
+
+        /**
+         * @return the start node partition of a relationship import, or NO_PARTITION
+         */
+        public int getPartition() {
+            return partition;
+        }
     }
 
     public N2OImportCSVConfig clone() {
         N2OImportCSVConfig cloned = new N2OImportCSVConfig();
         cloned.importList = this.importList;
+        cloned.rows = this.rows;
         return cloned;
     }
 
@@ -50,6 +66,21 @@ public class N2OImportCSVConfig {
         importList.add(new N2OCSVImport(cypherQuery,csvFilename));
     }
 
+    void putImport(String cypherQuery, String csvFilename, int partition) {
+        importList.add(new N2OCSVImport(cypherQuery,csvFilename,partition));
+    }
+
+    void putRows(String csvFilename, long rowCount) {
+        rows.put(csvFilename, rowCount);
+    }
+
+    /**
+     * @return the number of rows (without header) written to the CSV file, or 0 if unknown
+     */
+    long getRows(String csvFilename) {
+        return rows.getOrDefault(csvFilename, 0L);
+    }
+
 
     void loadConfig(File configFile) throws FileNotFoundException {
         getImportList().clear();
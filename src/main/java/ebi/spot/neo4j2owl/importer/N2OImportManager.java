@@ -4,37 +4,48 @@ import ebi.spot.neo4j2owl.N2OConfig;
 import ebi.spot.neo4j2owl.N2OStatic;
 import org.semanticweb.owlapi.apibinding.OWLManager;
 import org.semanticweb.owlapi.model.*;
-import org.semanticweb.owlapi.model.parameters.Imports;
 import org.semanticweb.owlapi.util.mansyntax.ManchesterOWLSyntaxParser;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
 
+/*
+The import manager is not thread-safe in general. The only methods that may be called concurrently are the
+lookup methods (prepareNode, lookupQSL, lookupSLFromAnnotation), and only while no nodes are being added.
+ */
 class N2OImportManager {
+    /*
+    Punned IRIs are resolved to the entity whose type comes first in this list.
+     */
+    private static final List<EntityType<?>> TYPE_PRIORITY = Arrays.asList(EntityType.CLASS, EntityType.NAMED_INDIVIDUAL,
+            EntityType.OBJECT_PROPERTY, EntityType.DATA_PROPERTY, EntityType.ANNOTATION_PROPERTY, EntityType.DATATYPE);
     private final ManchesterOWLSyntaxParser parser = OWLManager.createManchesterParser();
     private final Map<String, Set<String>> prop_columns = new HashMap<>();
     private final Map<String, Set<String>> node_columns = new HashMap<>();
     private final Map<OWLEntity, N2OEntity> nodeindex = new HashMap<>();
-    private final Map<String,N2OEntity> qslEntityIndex = new HashMap<>();
+    private final List<N2OEntity> nodesById = new ArrayList<>();
+    private final Map<IRI, OWLEntity> iriindex = new HashMap<>();
+    private final Map<OWLEntity, N2OEntity> preparedNodes = new ConcurrentHashMap<>();
     private final Map<N2OEntity,String> entityQSLIndex = new HashMap<>();
     private final Map<OWLEntity, Set<String>> nodeLabels = new HashMap<>();
     private final Map<OWLEntity, Map<String, Object>> node_properties = new HashMap<>();
-    private final List<N2ORelationship> rels = new ArrayList<>();
-    private final Map<N2OOWLRelationship, Map<String, Object>> relationship_properties = new HashMap<>();
+    private final N2ORelationshipStore relationships = new N2ORelationshipStore();
     private final Set<OWLEntity> entitiesWithClashingSafeLabels = new HashSet<>();
     private final IRIManager curies;
-    private final OWLOntology o;
+    private final N2OAxiomIndex index;
     //private long nextavailableid = 1;
 
-    N2OImportManager(OWLOntology o, IRIManager curies) {
+    N2OImportManager(N2OAxiomIndex index, IRIManager curies) {
         this.curies = curies;
-        Map<String,OWLEntity> entityMap = prepareEntityMap(o);
+        Map<String,OWLEntity> entityMap = prepareEntityMap(index);
         parser.setOWLEntityChecker(new N2OEntityChecker(entityMap));
-        this.o = o;
+        this.index = index;
     }
 
-    private Map<String, OWLEntity> prepareEntityMap(OWLOntology o) {
+    private Map<String, OWLEntity> prepareEntityMap(N2OAxiomIndex index) {
         Map<String, OWLEntity> entityMap = new HashMap<>();
-        for(OWLEntity e:o.getSignature(Imports.INCLUDED)) {
+        for(OWLEntity e:index.getSignature()) {
             String iri = e.getIRI().toString();
             String curie = curies.getCurie(e);
             entityMap.put(iri,e);
@@ -55,16 +66,9 @@ class N2OImportManager {
     }
 
     void updateRelation(N2OEntity start, N2OEntity end, Map<String,Object> rel_data) {
-
-        N2OOWLRelationship rel = new N2OOWLRelationship(start.getEntity(), end.getEntity(), rel_data.get("id").toString());
-        if (!relationship_properties.containsKey(rel)) {
-            relationship_properties.put(rel, new HashMap<>());
-        }
-        for(String k:rel_data.keySet()) {
-            if (!k.equals("id")) {
-                relationship_properties.get(rel).put(k,rel_data.get(k));
-            }
-        }
+        Map<String, Object> props = new HashMap<>(rel_data);
+        props.remove("id");
+        relationships.add(start.getId(), end.getId(), rel_data.get("id").toString(), props);
     }
 
     Optional<N2OEntity> getNode(OWLEntity e) {
@@ -73,13 +77,33 @@ class N2OImportManager {
             return Optional.empty();
         }
         if (!nodeindex.containsKey(e)) {
-            nodeindex.put(e, new N2OEntity(e, o, curies));
+            N2OEntity prepared = preparedNodes.remove(e);
+            N2OEntity en = prepared != null ? prepared : new N2OEntity(e, index, curies);
+            en.setId(nodesById.size());
+            nodesById.add(en);
+            nodeindex.put(e, en);
+            iriindex.merge(e.getIRI(), e, (current, candidate) -> TYPE_PRIORITY.indexOf(candidate.getEntityType()) < TYPE_PRIORITY.indexOf(current.getEntityType()) ? candidate : current);
             //nextavailableid++;
             //System.out.println(nodeindex.get(e));
         }
         N2OEntity en = nodeindex.get(e);
         en.addLabels(getLabels(e));
-        qslEntityIndex.put(prepareQSL(en),en);
+        prepareQSL(en);
+        return Optional.of(en);
+    }
+
+    /*
+    Like getNode, but without adding the node to the index: the entity is computed once and kept until getNode is
+    called for it.
+     */
+    Optional<N2OEntity> prepareNode(OWLEntity e) {
+        if(N2OStatic.isN2OBuiltInProperty(e)) {
+            return Optional.empty();
+        }
+        N2OEntity en = nodeindex.get(e);
+        if (en == null) {
+            en = preparedNodes.computeIfAbsent(e, k -> new N2OEntity(k, index, curies));
+        }
         return Optional.of(en);
     }
 
@@ -89,10 +113,9 @@ class N2OImportManager {
 
 
     OWLEntity typedEntity(IRI iri, OWLOntology o) {
-        for (OWLEntity e : nodeindex.keySet()) {
-            if (e.getIRI().equals(iri)) {
-                return e;
-            }
+        OWLEntity e = iriindex.get(iri);
+        if (e != null) {
+            return e;
         }
         // If its nowhere on the node index, pretend its a class, and add it to the node index.
         OWLClass c = o.getOWLOntologyManager().getOWLDataFactory().getOWLClass(iri);
@@ -102,9 +125,13 @@ class N2OImportManager {
 
 
     Map<String, Set<Object>> extractAxiomAnnotationsIntoValueMap(Set<OWLAnnotation> axiomAnnotations, boolean includeiri) {
+        return extractAxiomAnnotationsIntoValueMap(axiomAnnotations, includeiri, this::getSLFromAnnotation);
+    }
+
+    Map<String, Set<Object>> extractAxiomAnnotationsIntoValueMap(Set<OWLAnnotation> axiomAnnotations, boolean includeiri, Function<OWLAnnotation, Optional<String>> slLookup) {
         Map<String, Set<Object>> axAnnos = new HashMap<>();
         for (OWLAnnotation axAnn : axiomAnnotations) {
-            Optional<String> opt_sl_axiom_anno = getSLFromAnnotation(axAnn);
+            Optional<String> opt_sl_axiom_anno = slLookup.apply(axAnn);
             if (opt_sl_axiom_anno.isPresent()) {
                 String sl_axiom_anno = opt_sl_axiom_anno.get();
                 boolean iri = false;
@@ -197,12 +224,33 @@ class N2OImportManager {
         if(entityQSLIndex.containsKey(n2OEntity)) {
             return entityQSLIndex.get(n2OEntity);
         }
-        Optional<String> sl = N2OConfig.getInstance().iriToSl(IRI.create(n2OEntity.getIri()));
-        String sls = computeSafeLabel(n2OEntity, sl);
+        String sls = lookupQSL(n2OEntity);
         entityQSLIndex.put(n2OEntity,sls);
         return sls;
     }
 
+    /*
+    The labels of a streamed individual are only known once the stream reaches it, and the node may have been
+    created before, when it was first referenced.
+     */
+    void setLabel(N2OEntity n2OEntity, Set<String> labels) {
+        n2OEntity.setLabel(curies.getLabel(n2OEntity.getEntity(), labels), curies);
+        entityQSLIndex.remove(n2OEntity);
+        prepareQSL(n2OEntity);
+    }
+
+    /*
+    Same as prepareQSL, but does not remember the result.
+     */
+    String lookupQSL(N2OEntity n2OEntity) {
+        String sls = entityQSLIndex.get(n2OEntity);
+        if(sls != null) {
+            return sls;
+        }
+        Optional<String> sl = N2OConfig.getInstance().iriToSl(IRI.create(n2OEntity.getIri()));
+        return computeSafeLabel(n2OEntity, sl);
+    }
+
     private String computeSafeLabel(N2OEntity n2OEntity, Optional<String> sl) {
         String sls;
         switch (N2OConfig.getInstance().safeLabelMode()) {
@@ -233,13 +281,6 @@ class N2OImportManager {
         return sls;
     }
 
-    Optional<N2OEntity> fromSL(String sl) {
-        if(qslEntityIndex.containsKey(sl)) {
-            return Optional.of(qslEntityIndex.get(sl));
-        }
-        return Optional.empty();
-    }
-
     OWLClassExpression parseExpression(String manchesterSyntaxString) {
         parser.setStringToParse(manchesterSyntaxString);
         return parser.parseClassExpression();
@@ -249,21 +290,21 @@ class N2OImportManager {
         return entitiesWithClashingSafeLabels.contains(entity);
     }
 
-    void addRelation(N2ORelationship nr) {
-        rels.add(nr);
-    }
-
     Optional<String> getSLFromAnnotation(OWLAnnotation a) {
         Optional<N2OEntity> n = getNode(a.getProperty());
         return n.map(this::prepareQSL);
     }
 
-    Iterable<? extends N2ORelationship> getRelationships() {
-        return rels;
+    Optional<String> lookupSLFromAnnotation(OWLAnnotation a) {
+        return prepareNode(a.getProperty()).map(this::lookupQSL);
+    }
+
+    N2ORelationshipStore getRelationshipStore() {
+        return relationships;
     }
 
-    Set<N2OOWLRelationship> getN2OWLRelationships() {
-        return relationship_properties.keySet();
+    N2OEntity getNodeById(int id) {
+        return nodesById.get(id);
     }
 
     Map<String, Set<String>> getNodeColumns() {
@@ -278,18 +319,8 @@ class N2OImportManager {
         return node_properties;
     }
 
-    void indexRelationshipColumns(N2OOWLRelationship e) {
-        if (!this.prop_columns.containsKey(e.getRelationId())) {
-            prop_columns.put(e.getRelationId(), new HashSet<>());
-        }
-        prop_columns.get(e.getRelationId()).addAll(this.relationship_properties.get(e).keySet());
-    }
 
     Map<OWLEntity, N2OEntity> getNodeIndex() {
         return this.nodeindex;
     }
-
-    Map<String, Object> getRelationshipProperties(N2OOWLRelationship e) {
-        return this.relationship_properties.get(e);
-    }
 }
@@ -0,0 +1,206 @@
+package ebi.spot.neo4j2owl.importer;
+
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+import com.google.common.io.Resources;
+import ebi.spot.neo4j2owl.N2OException;
+import ebi.spot.neo4j2owl.N2OLog;
+import org.apache.commons.io.FileUtils;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.semanticweb.owlapi.model.IRI;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+
+/**
+ * The checkpoints of a resumable import (resume): the hashes of the ontology and the config, the CSV files written
+ * with their LOAD CSV statements, and the steps (preprocessing and LOAD CSV statements) that have completed. It is
+ * saved in the import directory after every step, and the CSV files of a failed import are kept.
+ *
+ * An import of the same ontology with the same config picks up where the failed one stopped: the ontology is not
+ * loaded again and no CSV files are written, and completed steps are skipped. All statements MERGE and SET, so the
+ * step that was running when the import failed can simply run again.
+ */
+public class N2OImportManifest {
+
+    static final String MANIFEST_FILENAME = "n2o-import-manifest.json";
+
+    private final N2OLog log = N2OLog.getInstance();
+    private final File file;
+    private final String ontologyHash;
+    private final String configHash;
+    private final Set<String> completed = new LinkedHashSet<>();
+    private final Map<String, Long> files = new LinkedHashMap<>();
+    private final Map<String, Long> counts = new LinkedHashMap<>();
+    private N2OImportCSVConfig csvConfig = null;
+
+    private N2OImportManifest(File file, String ontologyHash, String configHash) {
+        this.file = file;
+        this.ontologyHash = ontologyHash;
+        this.configHash = configHash;
+    }
+
+    /**
+     * @return a manifest that records nothing, for imports that are not resumable
+     */
+    public static N2OImportManifest disabled() {
+        return new N2OImportManifest(null, "", "");
+    }
+
+    /**
+     * @return the manifest of the previous import of the ontology with the same config, if it did not finish, or a
+     * new manifest
+     */
+    static N2OImportManifest open(File importdir, IRI ontology, File config) throws N2OException {
+        String ontologyHash;
+        String configHash;
+        try {
+            ontologyHash = Resources.asByteSource(ontology.toURI().toURL()).hash(Hashing.sha256()).toString();
+            configHash = config.isFile() ? Files.asByteSource(config).hash(Hashing.sha256()).toString() : "";
+        } catch (IOException e) {
+            throw new N2OException("Could not hash " + ontology + " for the import manifest..", e);
+        }
+        N2OImportManifest manifest = new N2OImportManifest(new File(importdir, MANIFEST_FILENAME), ontologyHash, configHash);
+        if (manifest.file.isFile()) {
+            if (manifest.load(importdir)) {
+                manifest.log.log("Resuming import: " + manifest.completed.size() + " steps already completed" + (manifest.hasCSVFiles() ? ", CSV files are not written again." : "."));
+                return manifest;
+            }
+            manifest.log.log("Import manifest does not match the ontology, the config or the CSV files, starting from scratch.");
+            FileUtils.deleteQuietly(manifest.file);
+        }
+        return manifest;
+    }
+
+    private boolean load(File importdir) throws N2OException {
+        try {
+            JSONObject json = new JSONObject(FileUtils.readFileToString(file, StandardCharsets.UTF_8));
+            if (!ontologyHash.equals(json.getString("ontology")) || !configHash.equals(json.getString("config"))) {
+                return false;
+            }
+            if (json.has("statements")) {
+                JSONObject f = json.getJSONObject("files");
+                for (String name : f.keySet()) {
+                    File csv = new File(importdir, name);
+                    if (!csv.isFile() || csv.length() != f.getLong(name)) {
+                        return false;
+                    }
+                    files.put(name, f.getLong(name));
+                }
+                csvConfig = new N2OImportCSVConfig();
+                for (Object o : json.getJSONArray("statements")) {
+                    JSONObject statement = (JSONObject) o;
+                    String csvFilename = statement.getString(N2OImportCSVConfig.CSV_CONFIG_ELEMENT_CSV_FILENAME);
+                    csvConfig.putImport(statement.getString(N2OImportCSVConfig.CSV_CONFIG_ELEMENT_CYPHER_QUERY), csvFilename, statement.getInt("partition"));
+                    csvConfig.putRows(csvFilename, statement.getLong("rows"));
+                }
+                JSONObject c = json.getJSONObject("counts");
+                c.keySet().forEach(k -> counts.put(k, c.getLong(k)));
+            }
+            json.getJSONArray("completed").forEach(step -> completed.add(step.toString()));
+            return true;
+        } catch (IOException | RuntimeException e) {
+            throw new N2OException("Import manifest " + file + " could not be read..", e);
+        }
+    }
+
+    private void save() throws N2OException {
+        JSONObject json = new JSONObject();
+        json.put("ontology", ontologyHash);
+        json.put("config", configHash);
+        if (hasCSVFiles()) {
+            JSONArray statements = new JSONArray();
+            for (N2OImportCSVConfig.N2OCSVImport i : csvConfig.getImportList()) {
+                JSONObject statement = new JSONObject();
+                statement.put(N2OImportCSVConfig.CSV_CONFIG_ELEMENT_CYPHER_QUERY, i.getCypherQuery());
+                statement.put(N2OImportCSVConfig.CSV_CONFIG_ELEMENT_CSV_FILENAME, i.getCsvFilename());
+                statement.put("partition", i.getPartition());
+                statement.put("rows", csvConfig.getRows(i.getCsvFilename()));
+                statements.put(statement);
+            }
+            json.put("statements", statements);
+            json.put("files", new JSONObject(files));
+            json.put("counts", new JSONObject(counts));
+        }
+        json.put("completed", new JSONArray(completed));
+
+        File tmp = new File(file.getPath() + ".tmp");
+        try {
+            FileUtils.writeStringToFile(tmp, json.toString(2), StandardCharsets.UTF_8);
+            java.nio.file.Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new N2OException("Import manifest " + file + " could not be saved..", e);
+        }
+    }
+
+    public boolean isEnabled() {
+        return file != null;
+    }
+
+    /**
+     * @return true if the CSV files of the previous import can be loaded as they are
+     */
+    public boolean hasCSVFiles() {
+        return csvConfig != null;
+    }
+
+    public N2OImportCSVConfig getCSVImportConfig() {
+        return csvConfig.clone();
+    }
+
+    /**
+     * Records the CSV files written for the import (and the number of entities loaded from the ontology, which are
+     * reported again when the import is resumed).
+     */
+    public void saveCSVFiles(N2OImportCSVConfig csvConfig, N2OImportResult importResult, File importdir) throws N2OException {
+        if (!isEnabled()) {
+            return;
+        }
+        this.csvConfig = csvConfig;
+        for (N2OImportCSVConfig.N2OCSVImport i : csvConfig.getImportList()) {
+            files.put(i.getCsvFilename(), new File(importdir, i.getCsvFilename()).length());
+        }
+        counts.put("classesLoaded", importResult.classesLoaded);
+        counts.put("individualsLoaded", importResult.individualsLoaded);
+        counts.put("objPropsLoaded", importResult.objPropsLoaded);
+        counts.put("annotationPropertiesloaded", importResult.annotationPropertiesloaded);
+        counts.put("dataPropsLoaded", importResult.dataPropsLoaded);
+        counts.put("elementsLoaded", importResult.elementsLoaded);
+        save();
+    }
+
+    public void restoreResult(N2OImportResult importResult) {
+        importResult.classesLoaded = counts.getOrDefault("classesLoaded", 0L);
+        importResult.individualsLoaded = counts.getOrDefault("individualsLoaded", 0L);
+        importResult.objPropsLoaded = counts.getOrDefault("objPropsLoaded", 0L);
+        importResult.annotationPropertiesloaded = counts.getOrDefault("annotationPropertiesloaded", 0L);
+        importResult.dataPropsLoaded = counts.getOrDefault("dataPropsLoaded", 0L);
+        importResult.elementsLoaded = counts.getOrDefault("elementsLoaded", 0L);
+    }
+
+    public synchronized boolean isCompleted(String step) {
+        return completed.contains(step);
+    }
+
+    /*
+    Steps complete on several threads with load_threads > 1.
+     */
+    public synchronized void complete(String step) throws N2OException {
+        if (isEnabled() && completed.add(step)) {
+            save();
+        }
+    }
+
+    /*
+    Called once the import has finished: the next import starts from scratch.
+     */
+    public void delete() {
+        if (isEnabled()) {
+            FileUtils.deleteQuietly(file);
+        }
+    }
+}
@@ -1,7 +1,14 @@
 package ebi.spot.neo4j2owl.importer;
 
+import ebi.spot.neo4j2owl.N2OLog;
+import org.neo4j.graphdb.QueryStatistics;
 import org.semanticweb.owlapi.model.*;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
 public class N2OImportResult {
 
     public long classesLoaded = 0;
@@ -12,6 +19,12 @@ public class N2OImportResult {
     public String terminationStatus = "OK";
     public long elementsLoaded = 0;
     public String extraInfo = "";
+    public long nodesCreated = 0;
+    public long relationshipsCreated = 0;
+    public long propertiesSet = 0;
+    public long labelsAdded = 0;
+    public double loadingSeconds = 0;
+    public List<Map<String, Object>> statements = new ArrayList<>();
 
     void countLoaded(OWLEntity e) {
         if (e instanceof OWLClass) {
@@ -28,6 +41,50 @@ public class N2OImportResult {
         elementsLoaded++;
     }
 
+    public void addStatementStatistics(String statement, long rows, QueryStatistics stats, long millis) {
+        addStatementStatistics(statement, rows, stats, millis, 1);
+    }
+
+    /*
+    For a statement that was retried (see N2ONeoCSVLoader.executeWithRetry), the counters are those of the last
+    attempt: what earlier attempts committed (periodic commits) before they failed is not counted. The time is that of
+    all attempts.
+     */
+    void addStatementStatistics(String statement, long rows, QueryStatistics stats, long millis, int attempts) {
+        addStatementStatistics(statement, rows, stats.getNodesCreated(), stats.getRelationshipsCreated(), stats.getPropertiesSet(), stats.getLabelsAdded(), millis, attempts);
+    }
+
+    void addStatementStatistics(String statement, long rows, long nodes, long relationships, long properties, long labels, long millis) {
+        addStatementStatistics(statement, rows, nodes, relationships, properties, labels, millis, 1);
+    }
+
+    /*
+    Statements loaded concurrently (load_threads) report from several threads.
+     */
+    private synchronized void addStatementStatistics(String statement, long rows, long nodes, long relationships, long properties, long labels, long millis, int attempts) {
+        double seconds = millis / 1000.0;
+        double rowsPerSecond = millis > 0 ? rows / seconds : 0;
+        Map<String, Object> s = new LinkedHashMap<>();
+        s.put("statement", statement);
+        s.put("rows", rows);
+        s.put("nodesCreated", nodes);
+        s.put("relationshipsCreated", relationships);
+        s.put("propertiesSet", properties);
+        s.put("labelsAdded", labels);
+        s.put("seconds", seconds);
+        s.put("rowsPerSecond", rowsPerSecond);
+        s.put("attempts", attempts);
+        statements.add(s);
+        nodesCreated += nodes;
+        relationshipsCreated += relationships;
+        propertiesSet += properties;
+        labelsAdded += labels;
+        loadingSeconds += seconds;
+        N2OLog.getInstance().log(statement + ": " + rows + " rows in " + seconds + "s (" + Math.round(rowsPerSecond) + " rows/s), " +
+                nodes + " nodes, " + relationships + " relationships created, " + properties + " properties set, " + labels + " labels added" +
+                (attempts > 1 ? " (attempt " + attempts + ")." : "."));
+    }
+
     public void setTerminationKO(String message) {
         this.terminationStatus = "KO";
         this.extraInfo = message;
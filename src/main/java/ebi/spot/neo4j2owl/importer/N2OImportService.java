@@ -27,12 +27,18 @@ public class N2OImportService {
 
 
     public N2OCSVWriter prepareCSVFilesForImport(String url, File importdir, N2OImportResult importResults) throws OWLOntologyCreationException, IOException, InterruptedException, ExecutionException, N2OException {
-        logger.log("Loading Ontology");
-        OWLOntology o = OWLManager.createOWLOntologyManager().loadOntologyFromOntologyDocument(getOntologyIRI(url, importdir));
-        logger.log("Size ontology: " + o.getAxiomCount());
-
         N2OOntologyLoader ontologyImporter = new N2OOntologyLoader();
-        ontologyImporter.importOntology(o, importResults);
+        if (N2OConfig.getInstance().isStreamABox()) {
+            logger.log("Streaming Ontology");
+            try (N2OStreamingOntologySource source = new N2OStreamingOntologySource(getOntologyIRI(url, importdir))) {
+                ontologyImporter.importOntology(source, importResults);
+            }
+        } else {
+            logger.log("Loading Ontology");
+            OWLOntology o = OWLManager.createOWLOntologyManager().loadOntologyFromOntologyDocument(getOntologyIRI(url, importdir));
+            logger.log("Size ontology: " + o.getAxiomCount());
+            ontologyImporter.importOntology(o, importResults);
+        }
 
         logger.log("Loading in Database: " + importdir.getAbsolutePath());
 
@@ -43,6 +49,25 @@ public class N2OImportService {
 
 
 
+    /*
+    With resume, the CSV files and the completed statements of a failed import of the same ontology and config are
+    picked up again (see N2OImportManifest). Only LOAD CSV statements can be resumed: the other loading strategies
+    keep their rows in memory.
+     */
+    public N2OImportManifest prepareImportManifest(String url, File importdir) throws N2OException {
+        N2OConfig config = N2OConfig.getInstance();
+        if (!config.isResume()) {
+            return N2OImportManifest.disabled();
+        }
+        if (config.getLoadingStrategy() != LOADING_STRATEGY.LOAD_CSV) {
+            throw new N2OException("resume is only supported with the load_csv loading strategy.");
+        }
+        if (config.getDeltaManifest().isPresent()) {
+            throw new N2OException("resume can not be combined with delta_manifest, the delta manifest is only known after the ontology has been loaded.");
+        }
+        return N2OImportManifest.open(importdir, getOntologyIRI(url, importdir), new File(importdir, "config.yaml"));
+    }
+
     private IRI getOntologyIRI(String url, File importdir) {
         IRI iri;
         if (url.startsWith("file://")) {
@@ -1,5 +1,6 @@
 package ebi.spot.neo4j2owl.importer;
 
+import ebi.spot.neo4j2owl.N2OConfig;
 import ebi.spot.neo4j2owl.N2OException;
 import org.semanticweb.owlapi.model.OWLOntologyCreationException;
 
@@ -21,6 +22,12 @@ public class N2OImporterRunner {
         N2OImportResult importResults = new N2OImportResult();
         try {
             importService.prepareConfig(config, importdir);
+            if (N2OConfig.getInstance().getLoadingStrategy() != LOADING_STRATEGY.LOAD_CSV) {
+                throw new N2OException("The runner only writes LOAD CSV files, loading_strategy " + N2OConfig.getInstance().getLoadingStrategy() + " is only supported by the owl2Import procedure.");
+            }
+            if (N2OConfig.getInstance().isSurrogateKeys()) {
+                throw new N2OException("surrogate_keys is only supported by the owl2Import procedure, which indexes and removes the keys.");
+            }
             N2OCSVWriter csvWriter = importService.prepareCSVFilesForImport(url, importdir, importResults);
             File cypherDir = new File(importdir,"transactions");
             if(!cypherDir.isDirectory()) {
@@ -30,6 +37,8 @@ public class N2OImporterRunner {
                 }
             }
             csvWriter.exportN2OImportConfig(cypherDir);
+            csvWriter.exportNeo4jAdminImportCommand(cypherDir);
+            csvWriter.savePendingDeltaManifest();
 
         } catch (IOException | N2OException | InterruptedException | ExecutionException | OWLOntologyCreationException e) {
             e.printStackTrace();
@@ -5,53 +5,248 @@ import ebi.spot.neo4j2owl.N2OLog;
 import ebi.spot.neo4j2owl.N2OStatic;
 import ebi.spot.neo4j2owl.N2OException;
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.neo4j.graphdb.ExecutionPlanDescription;
 import org.neo4j.graphdb.QueryExecutionException;
+import org.neo4j.graphdb.Result;
+import org.neo4j.graphdb.TransientFailureException;
+import org.neo4j.kernel.api.KernelTransactionHandle;
+import org.neo4j.kernel.api.exceptions.Status;
+import org.neo4j.kernel.impl.api.KernelTransactions;
 import org.neo4j.kernel.internal.GraphDatabaseAPI;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
 
 public class N2ONeoCSVLoader {
 
+    private static final String TRANSIENT_ERROR = "Neo.TransientError";
+    private static final int MAX_ATTEMPTS = 5;
+    private static final long INITIAL_BACKOFF_MS = 200;
+    private static final long CANCEL_TIMEOUT_MS = 10000;
+    private static final Set<String> PREFLIGHT_OPERATORS = new HashSet<>(Arrays.asList("NodeByLabelScan", "AllNodesScan", "CartesianProduct"));
+
     private final N2OLog log = N2OLog.getInstance();
     private final GraphDatabaseAPI dbapi;
+    private final N2OImportResult importResult;
+    private final N2OImportManifest manifest;
+    private final Set<String> running = ConcurrentHashMap.newKeySet();
+    private volatile boolean cancelled = false;
 
+    public N2ONeoCSVLoader(GraphDatabaseAPI dbapi, N2OImportResult importResult) {
+        this(dbapi, importResult, N2OImportManifest.disabled());
+    }
 
-    public N2ONeoCSVLoader(GraphDatabaseAPI dbapi) {
+    public N2ONeoCSVLoader(GraphDatabaseAPI dbapi, N2OImportResult importResult, N2OImportManifest manifest) {
         this.dbapi = dbapi;
+        this.importResult = importResult;
+        this.manifest = manifest;
     }
 
-    public void loadRelationshipsToNeoFromCSV(ExecutorService exService, N2OImportCSVConfig config, File importdir) throws IOException, InterruptedException, java.util.concurrent.ExecutionException {
-        runQueriesForQueryType(exService, importdir, config, "relationship_");
+    /*
+    Cancels the import: no further statement is started, and the transactions of the statements that are running are
+    marked for termination. A statement that is just starting has no transaction yet, and a LOAD CSV statement with
+    periodic commits starts a new one after every commit, so this is repeated until the statements have ended (or
+    for CANCEL_TIMEOUT_MS at most).
+     */
+    public void cancel() {
+        cancelled = true;
+        KernelTransactions transactions = dbapi.getDependencyResolver().resolveDependency(KernelTransactions.class);
+        long deadline = System.currentTimeMillis() + CANCEL_TIMEOUT_MS;
+        while (!running.isEmpty() && System.currentTimeMillis() < deadline) {
+            for (KernelTransactionHandle tx : transactions.activeTransactions()) {
+                if (!tx.terminationReason().isPresent() && tx.executingQueries().anyMatch(q -> running.contains(q.queryText()))) {
+                    log.log("Terminating transaction " + tx.getUserTransactionName());
+                    tx.markForTermination(Status.Transaction.Terminated);
+                }
+            }
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
     }
 
-    public void loadNodesToNeoFromCSV(ExecutorService exService, N2OImportCSVConfig config, File importdir) throws IOException, InterruptedException, java.util.concurrent.ExecutionException {
-        runQueriesForQueryType(exService, importdir, config, "nodes_");
+    private void checkCancelled(String cypher) throws N2OException {
+        if (cancelled) {
+            throw new N2OException("Import was cancelled: " + cypher);
+        }
     }
 
-    private void runQueriesForQueryType(ExecutorService exService, File importdir, N2OImportCSVConfig config, String typeToQuery) throws IOException, InterruptedException, java.util.concurrent.ExecutionException {
+    /*
+    Preprocessing statements are run once, without retries: they need not be idempotent.
+     */
+    public String runPreprocessingStatement(String cypher) throws N2OException {
+        checkCancelled(cypher);
+        long start = System.currentTimeMillis();
+        running.add(cypher);
+        try (Result result = dbapi.execute(cypher)) {
+            while (result.hasNext()) {
+                result.next();
+            }
+            importResult.addStatementStatistics(cypher, 0, result.getQueryStatistics(), System.currentTimeMillis() - start);
+        } catch (QueryExecutionException e) {
+            checkCancelled(cypher);
+            throw new N2OException(N2OStatic.CYPHER_FAILED_TO_EXECUTE + cypher, e);
+        } finally {
+            running.remove(cypher);
+        }
+        return N2OStatic.CYPHER_EXECUTED_SUCCESSFULLY + cypher;
+    }
+
+    /*
+    With load_threads > 1, relationship files partitioned by start node (relationship_partitions) are loaded
+    concurrently: all files of one partition are loaded one after the other by the same task, so no two concurrent
+    statements create relationships from the same start node. End nodes can still be shared between partitions; the
+    deadlocks this can cause are retried. Files without a partition, such as the delta files, are loaded first.
+     */
+    public void loadRelationshipsToNeoFromCSV(ExecutorService exService, N2OImportCSVConfig config, File importdir) throws IOException, InterruptedException, java.util.concurrent.ExecutionException, N2OException {
+        int threads = N2OConfig.getInstance().getLoadThreads();
+        Map<Integer, List<N2OImportCSVConfig.N2OCSVImport>> partitions = new TreeMap<>();
         for (N2OImportCSVConfig.N2OCSVImport importQuery: config.getImportList()) {
             String filename = importQuery.getCsvFilename();
-            if (filename.startsWith(typeToQuery)) {
-                runQuery(exService, importdir, importQuery, filename);
+            if (!filename.startsWith("relationship_")) {
+                continue;
+            }
+            if (threads == 1 || importQuery.getPartition() == N2OImportCSVConfig.NO_PARTITION) {
+                runQuery(exService, importdir, config, importQuery, filename);
+            } else {
+                partitions.computeIfAbsent(importQuery.getPartition(), k -> new ArrayList<>()).add(importQuery);
             }
         }
+        runQueriesInParallel(importdir, config, new ArrayList<>(partitions.values()), threads);
     }
 
-    private void runQuery(ExecutorService exService, File importdir, N2OImportCSVConfig.N2OCSVImport importQuery, String fn) throws IOException, InterruptedException, java.util.concurrent.ExecutionException {
-        String filename = handleTestMode(importdir, fn);
-        String finalCypher = importQuery.getCypherQuery().replaceAll(fn, filename);
-        log.log(finalCypher);
-        final Future<String> cf = exService.submit(() -> {
+    /*
+    With load_threads > 1, the node files are loaded concurrently. All of them have finished (or failed) before this
+    returns, so relationships are only loaded once all nodes are in the graph.
+     */
+    public void loadNodesToNeoFromCSV(ExecutorService exService, N2OImportCSVConfig config, File importdir) throws IOException, InterruptedException, java.util.concurrent.ExecutionException, N2OException {
+        int threads = N2OConfig.getInstance().getLoadThreads();
+        if (threads == 1) {
+            runQueriesForQueryType(exService, importdir, config, "nodes_");
+            return;
+        }
+        // The delta statements change existing nodes, so they run first, one after the other.
+        runQueriesForQueryType(exService, importdir, config, "nodes_delta_");
+        List<List<N2OImportCSVConfig.N2OCSVImport>> imports = new ArrayList<>();
+        for (N2OImportCSVConfig.N2OCSVImport importQuery: config.getImportList()) {
+            String filename = importQuery.getCsvFilename();
+            if (filename.startsWith("nodes_") && !filename.startsWith("nodes_delta_")) {
+                imports.add(Collections.singletonList(importQuery));
+            }
+        }
+        runQueriesInParallel(importdir, config, imports, threads);
+    }
+
+    /*
+    The surrogate keys (surrogate_keys) are only needed to connect the relationships. They are removed in batches of
+    periodic_commit nodes, because LOAD CSV is the only statement that can commit periodically.
+     */
+    public void removeSurrogateKeys(ExecutorService exService) throws InterruptedException, java.util.concurrent.ExecutionException {
+        String cypher = "MATCH (n:Entity) WHERE exists(n." + N2OStatic.ATT_SURROGATE_KEY + ") WITH n LIMIT " + N2OConfig.getInstance().getPeriodicCommit() +
+                " REMOVE n." + N2OStatic.ATT_SURROGATE_KEY + " RETURN count(n) AS count";
+        long removed;
+        do {
+            removed = exService.submit(() -> {
+                try (Result result = dbapi.execute(cypher)) {
+                    return (Long) result.next().get("count");
+                } catch (QueryExecutionException e) {
+                    throw new N2OException(N2OStatic.CYPHER_FAILED_TO_EXECUTE + cypher, e);
+                }
+            }).get();
+        } while (removed > 0);
+        String dropIndex = "DROP INDEX ON :Entity(" + N2OStatic.ATT_SURROGATE_KEY + ")";
+        log.log(dropIndex);
+        exService.submit(() -> {
             try {
-                dbapi.execute(finalCypher);
+                dbapi.execute(dropIndex).close();
             } catch (QueryExecutionException e) {
-                throw new N2OException(N2OStatic.CYPHER_FAILED_TO_EXECUTE+ finalCypher, e);
+                throw new N2OException(N2OStatic.CYPHER_FAILED_TO_EXECUTE + dropIndex, e);
+            }
+            return null;
+        }).get();
+    }
+
+    private void runQueriesForQueryType(ExecutorService exService, File importdir, N2OImportCSVConfig config, String typeToQuery) throws IOException, InterruptedException, java.util.concurrent.ExecutionException {
+        for (N2OImportCSVConfig.N2OCSVImport importQuery: config.getImportList()) {
+            String filename = importQuery.getCsvFilename();
+            if (filename.startsWith(typeToQuery)) {
+                runQuery(exService, importdir, config, importQuery, filename);
+            }
+        }
+    }
+
+    /*
+    Every group of statements is run by a single task, one statement after the other; the groups run concurrently.
+     */
+    private void runQueriesInParallel(File importdir, N2OImportCSVConfig config, List<List<N2OImportCSVConfig.N2OCSVImport>> groups, int threads) throws IOException, InterruptedException, N2OException {
+        if (groups.isEmpty()) {
+            return;
+        }
+        int poolSize = Math.min(threads, groups.size());
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>());
+        try {
+            Map<String, Future<String>> futures = new LinkedHashMap<>();
+            for (List<N2OImportCSVConfig.N2OCSVImport> group : groups) {
+                List<String> cyphers = new ArrayList<>();
+                List<String> filenames = new ArrayList<>();
+                for (N2OImportCSVConfig.N2OCSVImport importQuery : group) {
+                    cyphers.add(prepareQuery(importdir, importQuery, importQuery.getCsvFilename()));
+                    filenames.add(importQuery.getCsvFilename());
+                }
+                futures.put(String.join(", ", filenames), pool.submit(() -> {
+                    List<String> results = new ArrayList<>();
+                    for (int i = 0; i < cyphers.size(); i++) {
+                        results.add(runStatement(cyphers.get(i), filenames.get(i), config.getRows(filenames.get(i))));
+                    }
+                    return String.join(System.lineSeparator(), results);
+                }));
             }
-            return N2OStatic.CYPHER_EXECUTED_SUCCESSFULLY + finalCypher;
-        });
+            List<String> failed = new ArrayList<>();
+            Throwable cause = null;
+            for (Map.Entry<String, Future<String>> f : futures.entrySet()) {
+                try {
+                    log.log(f.getValue().get());
+                } catch (java.util.concurrent.ExecutionException e) {
+                    log.error("Loading " + f.getKey() + " failed: " + e.getCause().getMessage());
+                    failed.add(f.getKey());
+                    if (cause == null) {
+                        cause = e.getCause();
+                    }
+                }
+            }
+            if (!failed.isEmpty()) {
+                throw new N2OException("Loading failed for " + String.join(", ", failed), cause);
+            }
+        } finally {
+            N2OUtils.stopExecutor(pool);
+        }
+    }
+
+    private void runQuery(ExecutorService exService, File importdir, N2OImportCSVConfig config, N2OImportCSVConfig.N2OCSVImport importQuery, String fn) throws IOException, InterruptedException, java.util.concurrent.ExecutionException {
+        String finalCypher = prepareQuery(importdir, importQuery, fn);
+        final Future<String> cf = exService.submit(() -> runStatement(finalCypher, fn, config.getRows(fn)));
         log.log(cf.get());
                 /*if(fn.contains("Individual")) {
                     FileUtils.readLines(new File(fn),"utf-8").forEach(System.out::println);
@@ -59,12 +254,110 @@ public class N2ONeoCSVLoader {
                 }*/
     }
 
+    /*
+    Statements completed by a previous run of a resumed import (see N2OImportManifest) are skipped.
+     */
+    private String runStatement(String cypher, String csvFilename, long rows) throws N2OException, InterruptedException {
+        if (manifest.isCompleted(csvFilename)) {
+            return "Skipped, already completed: " + cypher;
+        }
+        checkCancelled(cypher);
+        preflight(cypher);
+        String result = executeWithRetry(cypher, csvFilename, rows);
+        manifest.complete(csvFilename);
+        return result;
+    }
+
+    private String prepareQuery(File importdir, N2OImportCSVConfig.N2OCSVImport importQuery, String fn) throws IOException {
+        String filename = handleTestMode(importdir, fn);
+        String finalCypher = importQuery.getCypherQuery().replaceAll(fn, filename);
+        log.log(finalCypher);
+        return finalCypher;
+    }
+
+    /*
+    EXPLAINs the statement (right before it runs, so that the estimates reflect the nodes loaded so far) and looks
+    for operators that touch every node of a label, or of the graph, for every row: with a missing index, a
+    relationship load that should take minutes takes hours. Depending on the preflight policy, such plans are
+    reported or fail the import before the statement runs. Operators estimated to produce fewer than
+    preflight_min_rows rows are ignored.
+     */
+    public void preflight(String cypher) throws N2OException {
+        if (N2OConfig.getInstance().getPreflightPolicy() == PREFLIGHT_POLICY.OFF) {
+            return;
+        }
+        List<String> scans = new ArrayList<>();
+        try (Result result = dbapi.execute("EXPLAIN " + cypher)) {
+            collectScans(result.getExecutionPlanDescription(), scans);
+        } catch (QueryExecutionException e) {
+            throw new N2OException("Preflight failed for " + cypher, e);
+        }
+        if (scans.isEmpty()) {
+            return;
+        }
+        String message = "Preflight: " + String.join(", ", scans) + " in " + cypher;
+        if (N2OConfig.getInstance().getPreflightPolicy() == PREFLIGHT_POLICY.FAIL) {
+            throw new N2OException(message);
+        }
+        log.warning(message);
+    }
+
+    private void collectScans(ExecutionPlanDescription plan, List<String> scans) {
+        if (PREFLIGHT_OPERATORS.contains(plan.getName())) {
+            Object estimate = plan.getArguments().get("EstimatedRows");
+            double rows = estimate instanceof Number ? ((Number) estimate).doubleValue() : 0;
+            if (rows >= N2OConfig.getInstance().getPreflightMinRows()) {
+                scans.add(plan.getName() + " " + plan.getIdentifiers() + " (estimated rows: " + Math.round(rows) + ")");
+            }
+        }
+        plan.getChildren().forEach(child -> collectScans(child, scans));
+    }
+
+    /*
+    Transient errors, such as deadlocks between concurrent statements, are retried with exponential backoff. This is
+    safe because all statements MERGE and SET, so running a statement again (even after some of its periodic commits
+    went through) has the same result. The statistics of the last attempt, the wall time (including retries) and the
+    number of attempts of the statement are added to the import result. A statement terminated because the import was cancelled is not retried.
+     */
+    private String executeWithRetry(String cypher, String csvFilename, long rows) throws N2OException, InterruptedException {
+        long start = System.currentTimeMillis();
+        running.add(cypher);
+        try {
+            for (int attempt = 1; ; attempt++) {
+                try (Result result = dbapi.execute(cypher)) {
+                    while (result.hasNext()) {
+                        result.next();
+                    }
+                    importResult.addStatementStatistics(csvFilename, rows, result.getQueryStatistics(), System.currentTimeMillis() - start, attempt);
+                    return N2OStatic.CYPHER_EXECUTED_SUCCESSFULLY + cypher;
+                } catch (QueryExecutionException | TransientFailureException e) {
+                    checkCancelled(cypher);
+                    boolean transientError = e instanceof TransientFailureException || ((QueryExecutionException) e).getStatusCode().startsWith(TRANSIENT_ERROR);
+                    if (!transientError || attempt >= MAX_ATTEMPTS) {
+                        throw new N2OException(N2OStatic.CYPHER_FAILED_TO_EXECUTE + cypher, e);
+                    }
+                    long backoff = INITIAL_BACKOFF_MS << (attempt - 1);
+                    log.warning("Transient error (" + e.getMessage() + "), retrying in " + backoff + "ms: " + cypher);
+                    Thread.sleep(backoff);
+                }
+            }
+        } finally {
+            running.remove(cypher);
+        }
+    }
+
     private String handleTestMode(File importdir, String filename) throws IOException {
         if (N2OConfig.getInstance().isTestmode()) {
             File csv_file = new File(importdir, filename);
             String fn = "/" + csv_file.getAbsolutePath();
             log.warning("CURRENTLY RUNNING IN TESTMODE, should set to testmode: false.");
-            FileUtils.readLines(csv_file, "utf-8").forEach(System.out::println);
+            if (N2OUtils.isCompressed(csv_file)) {
+                try (InputStream in = new GZIPInputStream(new FileInputStream(csv_file))) {
+                    IOUtils.readLines(in, "utf-8").forEach(System.out::println);
+                }
+            } else {
+                FileUtils.readLines(csv_file, "utf-8").forEach(System.out::println);
+            }
             return fn;
         }
         return filename;
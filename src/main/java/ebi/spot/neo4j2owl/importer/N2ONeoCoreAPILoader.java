@@ -0,0 +1,205 @@
+package ebi.spot.neo4j2owl.importer;
+
+import ebi.spot.neo4j2owl.N2OConfig;
+import ebi.spot.neo4j2owl.N2OLog;
+import ebi.spot.neo4j2owl.N2OStatic;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.PropertyContainer;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.RelationshipType;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.kernel.internal.GraphDatabaseAPI;
+
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Loads the rows prepared by N2OCSVWriter (see N2OUnwindImport) for the core_api loading strategy directly through
+ * the embedded database, in transactions of periodic_commit rows, without any Cypher.
+ *
+ * The result is the same as that of the LOAD CSV statements: nodes are merged by iri and relationships by type, start
+ * and end node. Every node is looked up in the iri index at most once; its id is remembered, so relationships are
+ * connected without index lookups.
+ */
+public class N2ONeoCoreAPILoader {
+
+    private static final Label ENTITY = Label.label(N2OStatic.NODETYPE_OWLENTITY);
+
+    private final N2OLog log = N2OLog.getInstance();
+    private final GraphDatabaseAPI dbapi;
+    private final Map<String, Long> nodeIds = new HashMap<>();
+    private final Set<Long> createdNodes = new HashSet<>();
+    private final N2OImportResult importResult;
+    private long nodesCreated, relationshipsCreated, propertiesSet, labelsAdded;
+
+    public N2ONeoCoreAPILoader(GraphDatabaseAPI dbapi, N2OImportResult importResult) {
+        this.dbapi = dbapi;
+        this.importResult = importResult;
+    }
+
+    public void loadNodesToNeo(ExecutorService exService, N2OCSVWriter csvWriter) throws InterruptedException, ExecutionException {
+        for (N2OUnwindImport nodes : csvWriter.getUnwindImports()) {
+            if (nodes.getCsvType() == N2OCSVWriter.CSV_TYPE.NODES) {
+                run(exService, nodes, () -> loadNodes(nodes));
+            }
+        }
+    }
+
+    public void loadRelationshipsToNeo(ExecutorService exService, N2OCSVWriter csvWriter) throws InterruptedException, ExecutionException {
+        for (N2OUnwindImport relationships : csvWriter.getUnwindImports()) {
+            if (relationships.getCsvType() == N2OCSVWriter.CSV_TYPE.RELATIONSHIPS) {
+                run(exService, relationships, () -> loadRelationships(relationships));
+            }
+        }
+    }
+
+    /*
+    The transactions are run by the executor, outside of the transaction of the procedure, like all other statements.
+     */
+    private void run(ExecutorService exService, N2OUnwindImport rows, Runnable load) throws InterruptedException, ExecutionException {
+        String description = "Core API: " + rows.getCsvType().name + " " + rows.getType() + " (" + rows.size() + " rows)";
+        log.log(description);
+        final Future<String> cf = exService.submit(() -> {
+            long start = System.currentTimeMillis();
+            nodesCreated = relationshipsCreated = propertiesSet = labelsAdded = 0;
+            load.run();
+            importResult.addStatementStatistics(rows.getCsvType().name + "_" + rows.getType(), rows.size(), nodesCreated, relationshipsCreated, propertiesSet, labelsAdded, System.currentTimeMillis() - start);
+            return N2OStatic.CYPHER_EXECUTED_SUCCESSFULLY + description;
+        });
+        log.log(cf.get());
+    }
+
+    private void loadNodes(N2OUnwindImport nodes) {
+        Label label = Label.label(nodes.getType());
+        int batchSize = N2OConfig.getInstance().getPeriodicCommit();
+        for (int start = 0; start < nodes.size(); start += batchSize) {
+            try (Transaction tx = dbapi.beginTx()) {
+                for (int i = start; i < Math.min(start + batchSize, nodes.size()); i++) {
+                    Map<String, Object> row = nodes.getRow(i);
+                    Node n = mergeNode(row.get("iri").toString());
+                    setProperties(n, row);
+                    if (!n.hasLabel(label)) {
+                        n.addLabel(label);
+                        labelsAdded++;
+                    }
+                }
+                tx.success();
+            }
+        }
+    }
+
+    private void loadRelationships(N2OUnwindImport relationships) {
+        RelationshipType type = RelationshipType.withName(relationships.getType());
+        Map<String, Long> merged = new HashMap<>();
+        int batchSize = N2OConfig.getInstance().getPeriodicCommit();
+        for (int start = 0; start < relationships.size(); start += batchSize) {
+            try (Transaction tx = dbapi.beginTx()) {
+                for (int i = start; i < Math.min(start + batchSize, relationships.size()); i++) {
+                    Map<String, Object> row = relationships.getRow(i);
+                    Optional<Node> s = findNode(row.get("start").toString());
+                    Optional<Node> e = findNode(row.get("end").toString());
+                    if (!s.isPresent() || !e.isPresent()) {
+                        // like MATCH, relationships between nodes that do not exist are dropped
+                        continue;
+                    }
+                    Relationship r = mergeRelationship(s.get(), type, e.get(), merged);
+                    setProperties(r, row);
+                }
+                tx.success();
+            }
+        }
+    }
+
+    private Node mergeNode(String iri) {
+        Optional<Node> existing = findNode(iri);
+        if (existing.isPresent()) {
+            return existing.get();
+        }
+        Node n = dbapi.createNode(ENTITY);
+        n.setProperty(N2OStatic.ATT_IRI, iri);
+        nodesCreated++;
+        labelsAdded++;
+        propertiesSet++;
+        nodeIds.put(iri, n.getId());
+        createdNodes.add(n.getId());
+        return n;
+    }
+
+    /*
+    Nodes that are not part of this import (for example unchanged nodes in a delta import) are looked up in the
+    index once.
+     */
+    private Optional<Node> findNode(String iri) {
+        Long id = nodeIds.get(iri);
+        if (id != null) {
+            return Optional.of(dbapi.getNodeById(id));
+        }
+        Node n = dbapi.findNode(ENTITY, N2OStatic.ATT_IRI, iri);
+        if (n != null) {
+            nodeIds.put(iri, n.getId());
+        }
+        return Optional.ofNullable(n);
+    }
+
+    /*
+    Nodes created by this import only have the relationships this import created, which are remembered per type;
+    only nodes that existed before have to be checked for existing relationships.
+     */
+    private Relationship mergeRelationship(Node s, RelationshipType type, Node e, Map<String, Long> merged) {
+        String key = s.getId() + " " + e.getId();
+        Long id = merged.get(key);
+        if (id != null) {
+            return dbapi.getRelationshipById(id);
+        }
+        Relationship r = null;
+        if (!createdNodes.contains(s.getId())) {
+            for (Relationship existing : s.getRelationships(Direction.OUTGOING, type)) {
+                if (existing.getEndNode().getId() == e.getId()) {
+                    r = existing;
+                    break;
+                }
+            }
+        }
+        if (r == null) {
+            r = s.createRelationshipTo(e, type);
+            relationshipsCreated++;
+        }
+        merged.put(key, r.getId());
+        return r;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void setProperties(PropertyContainer container, Map<String, Object> row) {
+        Map<String, Object> properties = (Map<String, Object>) row.get("props");
+        properties.forEach((k, v) -> container.setProperty(k, toPropertyValue(v)));
+        propertiesSet += properties.size();
+    }
+
+    /*
+    The Core API stores arrays rather than lists; the lists of N2OPropertyTypes are never empty and all their values
+    have the same type.
+     */
+    private static Object toPropertyValue(Object value) {
+        if (!(value instanceof List)) {
+            return value;
+        }
+        List<?> values = (List<?>) value;
+        Object first = values.get(0);
+        if (first instanceof Long) {
+            return values.stream().mapToLong(v -> (Long) v).toArray();
+        } else if (first instanceof Double) {
+            return values.stream().mapToDouble(v -> (Double) v).toArray();
+        } else if (first instanceof Boolean) {
+            boolean[] array = new boolean[values.size()];
+            for (int i = 0; i < array.length; i++) {
+                array[i] = (Boolean) values.get(i);
+            }
+            return array;
+        }
+        return values.stream().map(Object::toString).toArray(String[]::new);
+    }
+}
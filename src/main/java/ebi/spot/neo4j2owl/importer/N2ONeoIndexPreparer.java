@@ -0,0 +1,190 @@
+package ebi.spot.neo4j2owl.importer;
+
+import ebi.spot.neo4j2owl.N2OConfig;
+import ebi.spot.neo4j2owl.N2OException;
+import ebi.spot.neo4j2owl.N2OLog;
+import ebi.spot.neo4j2owl.N2OStatic;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.QueryExecutionException;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.graphdb.schema.IndexDefinition;
+import org.neo4j.graphdb.schema.Schema;
+import org.neo4j.kernel.internal.GraphDatabaseAPI;
+
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Creates the indexes (or uniqueness constraints) the import looks nodes up by, and blocks until all of them are
+ * ONLINE: the iri of every :Entity, the surrogate keys (surrogate_keys) and the lookup keys configured under indexes.
+ * Until an index is online, MERGE and MATCH fall back to label scans, which makes loading relationships quadratic.
+ * Indexes and constraints left by an earlier import into the same database are used as they are.
+ */
+public class N2ONeoIndexPreparer {
+
+    private static final Pattern INDEX = Pattern.compile(":?(\\w+)\\((\\w+)\\)");
+    private static final long POLL_INTERVAL_MS = 100;
+
+    private final N2OLog log = N2OLog.getInstance();
+    private final GraphDatabaseAPI dbapi;
+
+    public N2ONeoIndexPreparer(GraphDatabaseAPI dbapi) {
+        this.dbapi = dbapi;
+    }
+
+    public void prepareIndexes(ExecutorService exService) throws N2OException, InterruptedException, ExecutionException {
+        N2OConfig config = N2OConfig.getInstance();
+        Map<String, Long> pending = new LinkedHashMap<>();
+        // Concurrent MERGEs only create a node once per iri if the iri is unique.
+        if (config.isUniqueIri() || config.getLoadThreads() > 1) {
+            createUniqueIri(exService, pending);
+        } else {
+            createIndex(exService, pending, N2OStatic.NODETYPE_OWLENTITY, N2OStatic.ATT_IRI);
+        }
+        if (config.isSurrogateKeys() && config.getLoadingStrategy() == LOADING_STRATEGY.LOAD_CSV) {
+            createIndex(exService, pending, N2OStatic.NODETYPE_OWLENTITY, N2OStatic.ATT_SURROGATE_KEY);
+        }
+        for (String index : config.getIndexes()) {
+            Matcher m = INDEX.matcher(index.trim());
+            if (m.matches()) {
+                createIndex(exService, pending, m.group(1), m.group(2));
+            } else {
+                log.warning("CONFIG: " + index + " is not a valid index (Label(property)), skipping..");
+            }
+        }
+        exService.submit(() -> {
+            awaitOnline(pending, config.getIndexTimeoutInSeconds());
+            return null;
+        }).get();
+    }
+
+    /*
+    Without the constraint, concurrent MERGEs create duplicate nodes: the import fails rather than load the nodes
+    without it. A plain index left by an earlier single-threaded import is replaced, as Neo4j refuses to create the
+    constraint next to it.
+     */
+    private void createUniqueIri(ExecutorService exService, Map<String, Long> pending) throws InterruptedException, ExecutionException, N2OException {
+        String label = N2OStatic.NODETYPE_OWLENTITY;
+        String property = N2OStatic.ATT_IRI;
+        EXISTING existing = getExisting(exService, label, property);
+        if (existing == EXISTING.CONSTRAINT) {
+            log.log("Uniqueness constraint on " + describe(label, property) + " already exists.");
+            pending.put(describe(label, property), System.currentTimeMillis());
+            return;
+        }
+        try {
+            if (existing == EXISTING.INDEX) {
+                log.log("Replacing index " + describe(label, property) + " by a uniqueness constraint.");
+                execute(exService, "DROP INDEX ON :" + label + "(" + property + ")");
+            }
+            create(exService, pending, "CREATE CONSTRAINT ON (n:" + label + ") ASSERT n." + property + " IS UNIQUE", label, property);
+        } catch (ExecutionException e) {
+            throw new N2OException("Uniqueness constraint on " + describe(label, property) + " could not be created, which loading nodes concurrently (load_threads) or unique_iri require..", e.getCause());
+        }
+    }
+
+    private void createIndex(ExecutorService exService, Map<String, Long> pending, String label, String property) throws InterruptedException, ExecutionException, N2OException {
+        // A uniqueness constraint (left by an earlier import with load_threads > 1 or unique_iri) comes with an index.
+        if (getExisting(exService, label, property) != EXISTING.NONE) {
+            log.log("Index " + describe(label, property) + " already exists.");
+            pending.put(describe(label, property), System.currentTimeMillis());
+            return;
+        }
+        try {
+            create(exService, pending, "CREATE INDEX ON :" + label + "(" + property + ")", label, property);
+        } catch (ExecutionException e) {
+            throw new N2OException("Index " + describe(label, property) + " could not be created..", e.getCause());
+        }
+    }
+
+    private void create(ExecutorService exService, Map<String, Long> pending, String cypher, String label, String property) throws InterruptedException, ExecutionException {
+        long start = System.currentTimeMillis();
+        execute(exService, cypher);
+        pending.put(describe(label, property), start);
+    }
+
+    private void execute(ExecutorService exService, String cypher) throws InterruptedException, ExecutionException {
+        log.log(cypher);
+        exService.submit(() -> {
+            try {
+                dbapi.execute(cypher).close();
+            } catch (QueryExecutionException e) {
+                throw new N2OException(N2OStatic.CYPHER_FAILED_TO_EXECUTE + cypher, e);
+            }
+            return N2OStatic.CYPHER_EXECUTED_SUCCESSFULLY + cypher;
+        }).get();
+    }
+
+    private enum EXISTING {
+        NONE, INDEX, CONSTRAINT
+    }
+
+    /*
+    Neo4j refuses to create an index where there is a uniqueness constraint, and a uniqueness constraint where there
+    is an index.
+     */
+    private EXISTING getExisting(ExecutorService exService, String label, String property) throws InterruptedException, ExecutionException {
+        return exService.submit(() -> {
+            try (Transaction tx = dbapi.beginTx()) {
+                EXISTING existing = EXISTING.NONE;
+                for (IndexDefinition index : dbapi.schema().getIndexes(Label.label(label))) {
+                    List<String> properties = new ArrayList<>();
+                    index.getPropertyKeys().forEach(properties::add);
+                    if (properties.equals(Collections.singletonList(property))) {
+                        existing = index.isConstraintIndex() ? EXISTING.CONSTRAINT : EXISTING.INDEX;
+                    }
+                }
+                tx.success();
+                return existing;
+            }
+        }).get();
+    }
+
+    /*
+    Polls the state of the indexes rather than using Schema.awaitIndexesOnline(), so that the population time of
+    every index can be reported, and a failed index is reported right away.
+     */
+    private void awaitOnline(Map<String, Long> pending, long timeoutInSeconds) throws N2OException, InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutInSeconds * 1000;
+        while (!pending.isEmpty()) {
+            try (Transaction tx = dbapi.beginTx()) {
+                Schema schema = dbapi.schema();
+                for (IndexDefinition index : schema.getIndexes()) {
+                    List<String> properties = new ArrayList<>();
+                    index.getPropertyKeys().forEach(properties::add);
+                    if (properties.size() != 1) {
+                        continue;
+                    }
+                    String description = describe(index.getLabel().name(), properties.get(0));
+                    if (!pending.containsKey(description)) {
+                        continue;
+                    }
+                    switch (schema.getIndexState(index)) {
+                        case ONLINE:
+                            log.log("Index " + description + " ONLINE, population took " + (System.currentTimeMillis() - pending.remove(description)) + "ms.");
+                            break;
+                        case FAILED:
+                            throw new N2OException("Index " + description + " FAILED: " + schema.getIndexFailure(index));
+                        default:
+                            break;
+                    }
+                }
+                tx.success();
+            }
+            if (pending.isEmpty()) {
+                break;
+            }
+            if (System.currentTimeMillis() > deadline) {
+                throw new N2OException("Indexes not ONLINE after " + timeoutInSeconds + "s (index_timeout): " + String.join(", ", pending.keySet()));
+            }
+            Thread.sleep(POLL_INTERVAL_MS);
+        }
+    }
+
+    private static String describe(String label, String property) {
+        return ":" + label + "(" + property + ")";
+    }
+}
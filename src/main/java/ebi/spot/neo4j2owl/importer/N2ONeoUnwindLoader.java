@@ -0,0 +1,80 @@
+package ebi.spot.neo4j2owl.importer;
+
+import ebi.spot.neo4j2owl.N2OConfig;
+import ebi.spot.neo4j2owl.N2OException;
+import ebi.spot.neo4j2owl.N2OLog;
+import ebi.spot.neo4j2owl.N2OStatic;
+import org.neo4j.graphdb.QueryExecutionException;
+import org.neo4j.graphdb.QueryStatistics;
+import org.neo4j.graphdb.Result;
+import org.neo4j.kernel.internal.GraphDatabaseAPI;
+
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Loads the nodes and relationships prepared by N2OCSVWriter for the unwind loading strategy: the already typed rows
+ * are passed as parameters to UNWIND statements, in batches of periodic_commit rows per transaction, so that no
+ * values have to be split or converted by Cypher.
+ */
+public class N2ONeoUnwindLoader {
+
+    private static final String PARAM_ROWS = "rows";
+
+    private final N2OLog log = N2OLog.getInstance();
+    private final GraphDatabaseAPI dbapi;
+    private final N2OImportResult importResult;
+
+    public N2ONeoUnwindLoader(GraphDatabaseAPI dbapi, N2OImportResult importResult) {
+        this.dbapi = dbapi;
+        this.importResult = importResult;
+    }
+
+    public void loadNodesToNeo(ExecutorService exService, N2OCSVWriter csvWriter) throws InterruptedException, ExecutionException {
+        runImportsForType(exService, csvWriter, N2OCSVWriter.CSV_TYPE.NODES);
+    }
+
+    public void loadRelationshipsToNeo(ExecutorService exService, N2OCSVWriter csvWriter) throws InterruptedException, ExecutionException {
+        runImportsForType(exService, csvWriter, N2OCSVWriter.CSV_TYPE.RELATIONSHIPS);
+    }
+
+    private void runImportsForType(ExecutorService exService, N2OCSVWriter csvWriter, N2OCSVWriter.CSV_TYPE csvType) throws InterruptedException, ExecutionException {
+        int batchSize = N2OConfig.getInstance().getPeriodicCommit();
+        for (N2OUnwindImport unwindImport : csvWriter.getUnwindImports()) {
+            if (unwindImport.getCsvType() != csvType) {
+                continue;
+            }
+            log.log(unwindImport.getCypherQuery() + " (" + unwindImport.size() + " rows)");
+            long begin = System.currentTimeMillis();
+            long nodes = 0, relationships = 0, properties = 0, labels = 0;
+            for (int start = 0; start < unwindImport.size(); start += batchSize) {
+                List<Map<String, Object>> rows = new ArrayList<>();
+                for (int i = start; i < Math.min(start + batchSize, unwindImport.size()); i++) {
+                    rows.add(unwindImport.getRow(i));
+                }
+                QueryStatistics stats = runBatch(exService, unwindImport.getCypherQuery(), rows);
+                nodes += stats.getNodesCreated();
+                relationships += stats.getRelationshipsCreated();
+                properties += stats.getPropertiesSet();
+                labels += stats.getLabelsAdded();
+            }
+            importResult.addStatementStatistics(csvType.name + "_" + unwindImport.getType(), unwindImport.size(), nodes, relationships, properties, labels, System.currentTimeMillis() - begin);
+        }
+    }
+
+    private QueryStatistics runBatch(ExecutorService exService, String cypher, List<Map<String, Object>> rows) throws InterruptedException, ExecutionException {
+        final Future<QueryStatistics> cf = exService.submit(() -> {
+            try (Result result = dbapi.execute(cypher, Collections.singletonMap(PARAM_ROWS, rows))) {
+                while (result.hasNext()) {
+                    result.next();
+                }
+                return result.getQueryStatistics();
+            } catch (QueryExecutionException e) {
+                throw new N2OException(N2OStatic.CYPHER_FAILED_TO_EXECUTE + cypher, e);
+            }
+        });
+        return cf.get();
+    }
+}
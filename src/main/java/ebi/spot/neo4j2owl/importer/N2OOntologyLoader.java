@@ -6,19 +6,21 @@ import ebi.spot.neo4j2owl.N2OLog;
 import ebi.spot.neo4j2owl.N2OStatic;
 import org.apache.commons.lang3.StringUtils;
 import org.json.JSONObject;
-import org.semanticweb.elk.owlapi.ElkReasonerFactory;
 import org.semanticweb.owlapi.model.*;
-import org.semanticweb.owlapi.model.parameters.Imports;
-import org.semanticweb.owlapi.reasoner.OWLReasoner;
-import org.semanticweb.owlapi.search.EntitySearcher;
 
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 class N2OOntologyLoader {
 
     private final Set<OWLEntity> filterout = new HashSet<>();
     private N2OImportManager manager;
+    private N2OAxiomIndex index;
+    private N2OTaxonomy taxonomy;
     private final N2OLog log = N2OLog.getInstance();
     private RelationTypeCounter relationTypeCounter;
 
@@ -28,37 +30,92 @@ class N2OOntologyLoader {
      * @param o         ontology object that contains the axioms to be processed
      */
     void importOntology(OWLOntology o, N2OImportResult result) throws N2OException {
-        IRIManager iriManager = new IRIManager();
-        manager = new N2OImportManager(o, iriManager);
-        this.relationTypeCounter = new RelationTypeCounter(N2OConfig.getInstance().getRelationTypeThreshold());
-
-        log.log("Preparing reasoner");
-        OWLReasoner r = new ElkReasonerFactory().createReasoner(o);
-        filterout.add(o.getOWLOntologyManager().getOWLDataFactory().getOWLThing());
-        filterout.add(o.getOWLOntologyManager().getOWLDataFactory().getOWLNothing());
-        filterout.addAll(r.getUnsatisfiableClasses().getEntities());
+        prepareImport(o, new N2OAxiomIndex(o));
 
         log.log("Extracting signature");
-        extractSignature(o, result);
+        extractSignature(result);
         log.log("Extracting annotations to literals");
         indexIndividualAnnotationsToEntities(o);
         log.log("Extracting subclass relations");
-        addSubclassRelations(o, r);
+        addSubclassRelations();
         log.log("Extracting class assertions");
-        addClassAssertions(o, r);
+        addClassAssertions();
         log.log("Extracting existential relations");
-        addExistentialRelationships(o, r);
+        addExistentialRelationships();
         log.log("Computing dynamic node labels..");
-        addDynamicNodeLabels(r);
+        addDynamicNodeLabels();
+
+    }
+
+    /**
+     * Imports an ontology document without loading its assertions on named individuals into memory: only the
+     * TBox is loaded and classified, the rest is streamed into the import manager axiom by axiom.
+     *
+     * @param source the document to be streamed
+     */
+    void importOntology(N2OStreamingOntologySource source, N2OImportResult result) throws N2OException {
+        log.log("Loading TBox");
+        OWLOntology tbox = source.loadTBox();
+        log.log("Size TBox: " + tbox.getAxiomCount());
+        N2OAxiomIndex tboxIndex = new N2OAxiomIndex(tbox);
+        tboxIndex.setStreamed(source::isIndividual);
+        prepareImport(tbox, tboxIndex);
 
+        log.log("Extracting signature");
+        extractSignature(result);
+        log.log("Extracting annotations to literals");
+        indexIndividualAnnotationsToEntities(tbox);
+        log.log("Extracting subclass relations");
+        addSubclassRelations();
+        log.log("Extracting class assertions");
+        addClassAssertions();
+        log.log("Streaming assertions on individuals");
+        ABoxStreamConsumer consumer = new ABoxStreamConsumer(source, tbox, result);
+        source.streamABox(tbox, consumer);
+        consumer.flush();
+        log.log("Extracting existential relations");
+        addExistentialRelationships();
+        log.log("Computing dynamic node labels..");
+        addDynamicNodeLabels();
     }
 
-    private void addDynamicNodeLabels(OWLReasoner r) throws N2OException {
+    private void prepareImport(OWLOntology o, N2OAxiomIndex index) throws N2OException {
+        this.index = index;
+        manager = new N2OImportManager(index, new IRIManager());
+        this.relationTypeCounter = new RelationTypeCounter(N2OConfig.getInstance().getRelationTypeThreshold());
+
+        log.log("Preparing reasoner");
+        taxonomy = N2OTaxonomy.prepare(o, index, getDynamicNodeLabelExpressions());
+        filterout.add(o.getOWLOntologyManager().getOWLDataFactory().getOWLThing());
+        filterout.add(o.getOWLOntologyManager().getOWLDataFactory().getOWLNothing());
+        filterout.addAll(taxonomy.getUnsatisfiableClasses());
+    }
+
+    private Set<OWLClassExpression> getDynamicNodeLabelExpressions() throws N2OException {
+        Set<OWLClassExpression> expressions = new HashSet<>();
+        for (String ces : N2OConfig.getInstance().getClassExpressionNeoLabelMap().keySet()) {
+            try {
+                expressions.add(manager.parseExpression(ces));
+            } catch (Exception e) {
+                throw new N2OException("FAILED parsing class expression " + ces, e);
+            }
+        }
+        return expressions;
+    }
+
+    private void addDynamicNodeLabels() throws N2OException {
+        forEachDynamicNodeLabel((ce, label) -> {
+            log.info("Adding label " + label + " to " + N2OUtils.render(ce) + ".");
+            for (OWLClass sc : getSubClasses(ce, false)) manager.addNodeLabel(sc, label);
+            for (OWLNamedIndividual sc : getInstances(ce)) manager.addNodeLabel(sc, label);
+        });
+    }
+
+    private void forEachDynamicNodeLabel(BiConsumer<OWLClassExpression, String> labelConsumer) throws N2OException {
         Map<String, Set<String>> classExpressionLabelMap = N2OConfig.getInstance().getClassExpressionNeoLabelMap();
         for (String ces : classExpressionLabelMap.keySet()) {
             Set<String> labels = classExpressionLabelMap.get(ces);
             for (String label:labels) {
-                log.info("Adding label " + label + " to " + ces + ".");
                 try {
                     OWLClassExpression ce = manager.parseExpression(ces);
                     if (label.isEmpty()) {
@@ -69,27 +126,24 @@ class N2OOntologyLoader {
                         }
                     }
                     if (!label.isEmpty()) {
-                        for (OWLClass sc : getSubClasses(r, ce, false)) manager.addNodeLabel(sc, label);
-                        for (OWLNamedIndividual sc : getInstances(r, ce)) manager.addNodeLabel(sc, label);
+                        labelConsumer.accept(ce, label);
                     }
                 } catch (Exception e) {
                     throw new N2OException("FAILED adding label " + label + " to " + ces, e);
                 }
             }
         }
-
     }
 
-    private Set<OWLNamedIndividual> getInstances(OWLReasoner r, OWLClassExpression e) {
-        Set<OWLNamedIndividual> instances = new HashSet<>(r.getInstances(e, false).getFlattened());
+    private Set<OWLNamedIndividual> getInstances(OWLClassExpression e) {
+        Set<OWLNamedIndividual> instances = new HashSet<>(taxonomy.getInstances(e));
         instances.removeAll(filterout.stream().filter(OWLEntity::isOWLNamedIndividual).map(OWLEntity::asOWLNamedIndividual).collect(Collectors.toSet()));
         return instances;
     }
 
 
-    private Set<OWLClass> getSubClasses(OWLReasoner r, OWLClassExpression e, boolean direct) {
-        Set<OWLClass> subclasses = new HashSet<>(r.getSubClasses(e, direct).getFlattened());
-        subclasses.addAll(r.getEquivalentClasses(e).getEntities());
+    private Set<OWLClass> getSubClasses(OWLClassExpression e, boolean direct) {
+        Set<OWLClass> subclasses = new HashSet<>(direct ? taxonomy.getDirectSubClasses(e.asOWLClass()) : taxonomy.getSubClasses(e));
         subclasses.removeAll(filterout.stream().filter(OWLEntity::isOWLClass).map(OWLEntity::asOWLClass).collect(Collectors.toSet()));
         if (e.isClassExpressionLiteral()) {
             subclasses.remove(e.asOWLClass());
@@ -110,67 +164,118 @@ class N2OOntologyLoader {
      * 2. Extract annotations directly on the entity and stores them
      * 3.
      *
-     * @param o      Ontology from which the signature is extracted
+     * The entities are processed in chunks. The nodes of a chunk are computed in parallel (see extraction_threads)
+     * and then added to the import manager one by one, in the same order as they would be sequentially.
+     *
      * @param result result object to take care of gathering some statistics
      */
-    private void extractSignature(OWLOntology o, N2OImportResult result) {
-        Set<OWLEntity> entities = new HashSet<>(o.getSignature(Imports.INCLUDED));
-        int i = 0;
-        for (OWLEntity e : entities) {
-            i++;
-            if (i % 1000 == 0) {
-                log.log(i + " out of " + entities.size());
+    private void extractSignature(N2OImportResult result) throws N2OException {
+        List<OWLEntity> entities = new ArrayList<>(new HashSet<>(index.getSignature()));
+        int threads = N2OConfig.getInstance().getExtractionThreads();
+        int chunkSize = 1000 * threads;
+        ForkJoinPool pool = threads > 1 ? new ForkJoinPool(threads) : null;
+        try {
+            for (int i = 0; i < entities.size(); i += chunkSize) {
+                List<OWLEntity> chunk = entities.subList(i, Math.min(i + chunkSize, entities.size()));
+                for (Optional<ExtractedNode> node : extractNodes(chunk, pool)) {
+                    node.ifPresent(n -> addExtractedNode(n, result));
+                }
+                if (i + chunk.size() < entities.size()) {
+                    log.log((i + chunk.size()) + " out of " + entities.size());
+                }
             }
-            Optional<N2OEntity> one = manager.getNode(e);
-            if (one.isPresent()) {
-                N2OEntity ne = one.get();
-                Map<String, Object> props = ne.getNodeBuiltInMetadataAsMap();
-                props.put(N2OStatic.ATT_QUALIFIED_SAFE_LABEL, manager.prepareQSL(ne));
-                extractIndividualAnnotations(e, props, o);
-                createNode(ne, props);
-                result.countLoaded(e);
+        } finally {
+            if (pool != null) {
+                pool.shutdown();
             }
         }
         if (!N2OConfig.getInstance().safeLabelMode().equals(LABELLING_MODE.QSL))
             manager.checkUniqueSafeLabel(N2OConfig.getInstance().safeLabelMode());
     }
 
+    private List<Optional<ExtractedNode>> extractNodes(List<OWLEntity> entities, ForkJoinPool pool) throws N2OException {
+        if (pool == null) {
+            return entities.stream().map(this::extractNode).collect(Collectors.toList());
+        }
+        try {
+            return pool.submit(() -> entities.parallelStream().map(this::extractNode).collect(Collectors.toList())).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new N2OException("Extraction of entities was interrupted..", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new N2OException("Extraction of entities failed..", e.getCause());
+        }
+    }
+
     /**
-     * @param e     The entity from which the annotations are extracted
-     * @param props The property map of the entity (neo properties)
-     * @param o the ontology
+     * Computes the node of an entity, including the annotations directly on the entity, without changing the
+     * import manager. Safe to run concurrently.
+     *
+     * @param e The entity from which the node is extracted
      */
-    private void extractIndividualAnnotations(OWLEntity e, Map<String, Object> props, OWLOntology o) {
-        Collection<OWLAnnotationAssertionAxiom> annos = EntitySearcher.getAnnotationAssertionAxioms(e, o);
+    private Optional<ExtractedNode> extractNode(OWLEntity e) {
+        Optional<N2OEntity> one = manager.prepareNode(e);
+        if (!one.isPresent()) {
+            return Optional.empty();
+        }
+        ExtractedNode node = new ExtractedNode(e, one.get());
+        node.props.put(N2OStatic.ATT_QUALIFIED_SAFE_LABEL, manager.lookupQSL(node.entity));
         Map<String, Set<Object>> propertyAnnotationValueMap = new HashMap<>();
-        for (OWLAnnotationAssertionAxiom ax : annos) {
-            OWLAnnotation a = ax.getAnnotation();
-            OWLAnnotationValue aval = a.annotationValue();
-            if (!aval.asIRI().isPresent()) {
-                Optional<String> opt_sl_annop = manager.getSLFromAnnotation(a);
-                if (opt_sl_annop.isPresent()) {
-                    String sl_annop = opt_sl_annop.get();
-                    Object value = N2OUtils.extractValueFromOWLAnnotationValue(aval);
-                    relationTypeCounter.increment(sl_annop,value);
-                    if (a.getProperty().equals(N2OStatic.ap_neo4jLabel)) {
-                        manager.addNodeLabel(e, value.toString());
+        for (OWLAnnotationAssertionAxiom ax : index.getAnnotationAssertionAxioms(e)) {
+            extractAnnotationAssertion(e, ax, propertyAnnotationValueMap, node::lookupSLFromAnnotation, node::addNodeLabel);
+        }
+        convertPropertyAnnotationValueMapToEntityPropertyMap(node.props, propertyAnnotationValueMap);
+        return Optional.of(node);
+    }
+
+    private void addExtractedNode(ExtractedNode node, N2OImportResult result) {
+        Optional<N2OEntity> one = manager.getNode(node.owlEntity);
+        if (one.isPresent()) {
+            manager.prepareQSL(one.get());
+            node.deferred.forEach(Runnable::run);
+            createNode(one.get(), node.props);
+            result.countLoaded(node.owlEntity);
+        }
+    }
+
+    /**
+     * @param e  The entity the annotation assertion is about
+     * @param ax The annotation assertion; IRI values are ignored here (see indexAnnotationToEntity)
+     * @param propertyAnnotationValueMap collects the values of the entity, by property
+     */
+    private void extractAnnotationAssertion(OWLEntity e, OWLAnnotationAssertionAxiom ax, Map<String, Set<Object>> propertyAnnotationValueMap) {
+        extractAnnotationAssertion(e, ax, propertyAnnotationValueMap, manager::getSLFromAnnotation, manager::addNodeLabel);
+    }
+
+    private void extractAnnotationAssertion(OWLEntity e, OWLAnnotationAssertionAxiom ax, Map<String, Set<Object>> propertyAnnotationValueMap, Function<OWLAnnotation, Optional<String>> slLookup, BiConsumer<OWLEntity, String> nodeLabeller) {
+        OWLAnnotation a = ax.getAnnotation();
+        OWLAnnotationValue aval = a.annotationValue();
+        if (!aval.asIRI().isPresent()) {
+            Optional<String> opt_sl_annop = slLookup.apply(a);
+            if (opt_sl_annop.isPresent()) {
+                String sl_annop = opt_sl_annop.get();
+                Object value = N2OUtils.extractValueFromOWLAnnotationValue(aval);
+                relationTypeCounter.increment(sl_annop,value);
+                if (a.getProperty().equals(N2OStatic.ap_neo4jLabel)) {
+                    nodeLabeller.accept(e, value.toString());
+                } else {
+                    value = removeAnnotationDelimitersFromAnnotationValue(value);
+                    Set<OWLAnnotation> axiomAnnotations = ax.getAnnotations();
+                    if (N2OConfig.getInstance().isShouldPropertyBeRolledAsJSON(a.getProperty())) {
+                        Map<String, Set<Object>> axAnnos = manager.extractAxiomAnnotationsIntoValueMap(axiomAnnotations,true,slLookup);
+                        axAnnos.forEach((k,v)->v.forEach(obj->relationTypeCounter.increment(k,obj)));
+                        String valueAnnotated = createAxiomAnnotationJSONString(value, axAnnos);
+                        //log.info(valueAnnotated);
+                        addAnnotationValueToValueMap(propertyAnnotationValueMap, sl_annop, valueAnnotated);
                     } else {
-                        value = removeAnnotationDelimitersFromAnnotationValue(value);
-                        Set<OWLAnnotation> axiomAnnotations = ax.getAnnotations();
-                        if (N2OConfig.getInstance().isShouldPropertyBeRolledAsJSON(a.getProperty())) {
-                            Map<String, Set<Object>> axAnnos = manager.extractAxiomAnnotationsIntoValueMap(axiomAnnotations,true);
-                            axAnnos.forEach((k,v)->v.forEach(obj->relationTypeCounter.increment(k,obj)));
-                            String valueAnnotated = createAxiomAnnotationJSONString(value, axAnnos);
-                            //log.info(valueAnnotated);
-                            addAnnotationValueToValueMap(propertyAnnotationValueMap, sl_annop, valueAnnotated);
-                        } else {
-                            addAnnotationValueToValueMap(propertyAnnotationValueMap, sl_annop, value);
-                        }
+                        addAnnotationValueToValueMap(propertyAnnotationValueMap, sl_annop, value);
                     }
                 }
             }
         }
-        convertPropertyAnnotationValueMapToEntityPropertyMap(props, propertyAnnotationValueMap);
     }
 
     private void convertPropertyAnnotationValueMapToEntityPropertyMap(Map<String, Object> props, Map<String, Set<Object>> propertyAnnotationValueMap) {
@@ -179,7 +284,7 @@ class N2OOntologyLoader {
                 if (v.size() == 1) {
                     props.put(k, v.iterator().next());
                 } else {
-                    Set<String> s = v.stream().map(Object::toString).collect(Collectors.toSet());
+                    Set<String> s = v.stream().map(Object::toString).collect(Collectors.toCollection(TreeSet::new));
                     props.put(k, String.join(N2OStatic.ANNOTATION_DELIMITER, s));
                 }
             }
@@ -236,21 +341,22 @@ class N2OOntologyLoader {
      * @param o Ontology whose signature is indexed
      */
     private void indexIndividualAnnotationsToEntities(OWLOntology o) {
-        Set<OWLEntity> entities = new HashSet<>(o.getSignature(Imports.INCLUDED));
-        for (OWLEntity e : entities) {
-            //Map<String, Object> props = new HashMap<>();
-            Collection<OWLAnnotationAssertionAxiom> annos = EntitySearcher.getAnnotationAssertionAxioms(e, o);
-            for (OWLAnnotationAssertionAxiom a : annos) {
+        for (OWLEntity e : index.getSignature()) {
+            for (OWLAnnotationAssertionAxiom a : index.getAnnotationAssertionAxioms(e)) {
                 OWLAnnotationValue aval = a.annotationValue();
                 if (aval.asIRI().isPresent()) {
-                    IRI iri = aval.asIRI().or(IRI.create("WRONGANNOTATIONPROPERTY"));
-                    Optional<N2OEntity> n2OEntity = manager.getNode(a.getProperty());
-                    n2OEntity.ifPresent(oEntity -> indexRelation(e, manager.typedEntity(iri, o), oEntity, a.getAnnotations()));
+                    indexAnnotationToEntity(e, a, iri -> manager.typedEntity(iri, o));
                 }
             }
         }
     }
 
+    private void indexAnnotationToEntity(OWLEntity e, OWLAnnotationAssertionAxiom a, Function<IRI, OWLEntity> typedEntity) {
+        IRI iri = a.annotationValue().asIRI().or(IRI.create("WRONGANNOTATIONPROPERTY"));
+        Optional<N2OEntity> n2OEntity = manager.getNode(a.getProperty());
+        n2OEntity.ifPresent(oEntity -> indexRelation(e, typedEntity.apply(iri), oEntity, a.getAnnotations()));
+    }
+
     private void indexRelation(OWLEntity from, OWLEntity to, N2OEntity rel, Set<OWLAnnotation> annos) {
         if (filterout.contains(from)) {
             return;
@@ -270,16 +376,16 @@ class N2OOntologyLoader {
 
         Map<String, Set<Object>> props = manager.extractAxiomAnnotationsIntoValueMap(annos,true);
         props.forEach((k,v)->v.forEach(obj->relationTypeCounter.increment(k,obj)));
-        manager.addRelation(new N2ORelationship(from_n.get(), to_n.get(), roletype, props));
+        // Stored right away, so that the model never holds the relationships as objects.
+        updateRelationship(from_n.get(), to_n.get(), prepareRelationshipProperties(rel, roletype, props));
     }
 
-    private void addSubclassRelations(OWLOntology o, OWLReasoner r) {
-        Set<OWLClass> entities = new HashSet<>(o.getClassesInSignature(Imports.INCLUDED));
-        for (OWLClass e : entities) {
+    private void addSubclassRelations() {
+        for (OWLClass e : index.getClasses()) {
             if (filterout.contains(e)) {
                 continue;
             }
-            for (OWLClass sub : getSubClasses(r, e, true)) {
+            for (OWLClass sub : getSubClasses(e, true)) {
 
                 //System.out.println(e+" sub: "+sub);
                 Map<String, Object> props = new HashMap<>();
@@ -294,13 +400,12 @@ class N2OOntologyLoader {
         }
     }
 
-    private void addClassAssertions(OWLOntology o, OWLReasoner r) {
-        Set<OWLNamedIndividual> entities = new HashSet<>(o.getIndividualsInSignature(Imports.INCLUDED));
-        for (OWLNamedIndividual e : entities) {
+    private void addClassAssertions() {
+        for (OWLNamedIndividual e : index.getIndividuals()) {
             if (filterout.contains(e)) {
                 continue;
             }
-            for (OWLClass type : r.getTypes(e, true).getFlattened()) {
+            for (OWLClass type : taxonomy.getDirectTypes(e)) {
                 if (filterout.contains(type)) {
                     continue;
                 }
@@ -317,27 +422,8 @@ class N2OOntologyLoader {
     }
 
 
-    private void addExistentialRelationships(OWLOntology o, OWLReasoner r) {
-        processLogicallyConnectedEntities(r, o);
-        updateMetadataOfAllIndexedRelationships();
-    }
-
-    private void updateMetadataOfAllIndexedRelationships() {
-        for (N2ORelationship relationship : manager.getRelationships()) {
-            N2OEntity e = relationship.getStart();
-            if (filterout.contains(e.getEntity())) {
-                continue;
-            }
-
-            N2OEntity ec = relationship.getEnd();
-
-            if (filterout.contains(ec.getEntity())) {
-                continue;
-            }
-
-            Map<String, Object> props = prepareRelationshipProperties(relationship);
-            updateRelationship(e, ec, props);
-        }
+    private void addExistentialRelationships() {
+        processLogicallyConnectedEntities();
     }
 
 
@@ -346,83 +432,81 @@ class N2OOntologyLoader {
 
 
     /**
-     * @param relationship Relationship object whose properties are being processed
+     * @param relEntity the property the relationship is an instance of
+     * @param rel the relationship type
+     * @param props_rel the axiom annotations of the relationship
      * @return A map of all the properties, including the updated built-in ones.
      */
-    private Map<String, Object> prepareRelationshipProperties(N2ORelationship relationship) {
-        String rel = relationship.getRelationId();
-        Optional<N2OEntity> relEntity = manager.fromSL(rel);
+    private Map<String, Object> prepareRelationshipProperties(N2OEntity relEntity, String rel, Map<String, Set<Object>> props_rel) {
         Map<String, Object> props = new HashMap<>();
-        Map<String, Set<Object>> props_rel = relationship.getProps();
         props_rel.remove(N2OStatic.ATT_IRI);
         props_rel.remove(N2OStatic.ATT_LABEL);
         props_rel.remove(N2OStatic.ATT_NODE_TYPE);
         props_rel.remove(N2OStatic.ATT_SHORT_FORM);
         props.put("id", rel);
         convertPropertyAnnotationValueMapToEntityPropertyMap(props, props_rel);
-        if (relEntity.isPresent()) {
-            props.put(N2OStatic.ATT_IRI, relEntity.get().getIri());
-            props.put(N2OStatic.ATT_NODE_TYPE, relEntity.get().getEntityType());
-            props.put(N2OStatic.ATT_LABEL, relEntity.get().getLabel());
-            props.put(N2OStatic.ATT_SHORT_FORM, relEntity.get().getShort_form());
-        }
+        props.put(N2OStatic.ATT_IRI, relEntity.getIri());
+        props.put(N2OStatic.ATT_NODE_TYPE, relEntity.getEntityType());
+        props.put(N2OStatic.ATT_LABEL, relEntity.getLabel());
+        props.put(N2OStatic.ATT_SHORT_FORM, relEntity.getShort_form());
         return props;
     }
 
-    private void processLogicallyConnectedEntities(OWLReasoner r, OWLOntology o) {
-        log.info("processLogicallyConnectedEntities currently does not use the reasoner to infer additional existential restrictions "+r.getReasonerName());
-
-        for (OWLAxiom ax : o.getAxioms(Imports.INCLUDED)) {
-            if (ax instanceof OWLSubClassOfAxiom) {
-                // CLASS-CLASS: Simple existential "class" restrictions on classes
-                // CLASS-INDIVIDUAL: Simple existential "individual" restrictions on classes
-                OWLSubClassOfAxiom sax = (OWLSubClassOfAxiom) ax;
-                OWLClassExpression s_super = sax.getSuperClass();
-                OWLClassExpression s_sub = sax.getSubClass();
-                if (s_sub.isClassExpressionLiteral()) {
-                    if (s_super instanceof OWLObjectSomeValuesFrom) {
-                        processExistentialRestriction((OWLObjectSomeValuesFrom) s_super, s_sub.asOWLClass(), ax.getAnnotations());
-                    } else if (s_super instanceof OWLObjectHasValue) {
-                        processExistentialRestriction((OWLObjectSomeValuesFrom) ((OWLObjectHasValue) s_super).asSomeValuesFrom(), s_sub.asOWLClass(), ax.getAnnotations());
-                    }
+    private void processLogicallyConnectedEntities() {
+        log.info("processLogicallyConnectedEntities currently does not use the reasoner to infer additional existential restrictions");
+
+        for (OWLSubClassOfAxiom sax : index.getSubClassOfAxioms()) {
+            // CLASS-CLASS: Simple existential "class" restrictions on classes
+            // CLASS-INDIVIDUAL: Simple existential "individual" restrictions on classes
+            OWLClassExpression s_super = sax.getSuperClass();
+            OWLClassExpression s_sub = sax.getSubClass();
+            if (s_sub.isClassExpressionLiteral()) {
+                if (s_super instanceof OWLObjectSomeValuesFrom) {
+                    processExistentialRestriction((OWLObjectSomeValuesFrom) s_super, s_sub.asOWLClass(), sax.getAnnotations());
+                } else if (s_super instanceof OWLObjectHasValue) {
+                    processExistentialRestriction((OWLObjectSomeValuesFrom) ((OWLObjectHasValue) s_super).asSomeValuesFrom(), s_sub.asOWLClass(), sax.getAnnotations());
                 }
-            } else if (ax instanceof OWLEquivalentClassesAxiom) {
-                // CLASS-CLASS: Simple existential "class" restrictions on classes
-                // CLASS-INDIVIDUAL: Simple existential "individual" restrictions on classes
-                OWLEquivalentClassesAxiom eqax = (OWLEquivalentClassesAxiom) ax;
-                Set<OWLClass> names = new HashSet<>();
-                eqax.getClassExpressions().stream().filter(OWLClassExpression::isClassExpressionLiteral).forEach(e -> names.add(e.asOWLClass()));
-                for (OWLClass c : names) {
-                    for (OWLClassExpression e : eqax.getClassExpressionsAsList()) {
-                        if (e instanceof OWLObjectSomeValuesFrom) {
-                            processExistentialRestriction((OWLObjectSomeValuesFrom) e, c, ax.getAnnotations());
-                        }
+            }
+        }
+        for (OWLEquivalentClassesAxiom eqax : index.getEquivalentClassesAxioms()) {
+            // CLASS-CLASS: Simple existential "class" restrictions on classes
+            // CLASS-INDIVIDUAL: Simple existential "individual" restrictions on classes
+            Set<OWLClass> names = new HashSet<>();
+            eqax.getClassExpressions().stream().filter(OWLClassExpression::isClassExpressionLiteral).forEach(e -> names.add(e.asOWLClass()));
+            for (OWLClass c : names) {
+                for (OWLClassExpression e : eqax.getClassExpressionsAsList()) {
+                    if (e instanceof OWLObjectSomeValuesFrom) {
+                        processExistentialRestriction((OWLObjectSomeValuesFrom) e, c, eqax.getAnnotations());
                     }
                 }
-            } else if (ax instanceof OWLClassAssertionAxiom) {
-                // INDIVIDUAL-CLASS: Simple existential "individual" restrictions on individuals
-                OWLClassAssertionAxiom eqax = (OWLClassAssertionAxiom) ax;
-                OWLIndividual i = eqax.getIndividual();
-                if (i.isNamed()) {
-                    OWLClassExpression type = eqax.getClassExpression();
-                    if (type instanceof OWLObjectSomeValuesFrom) {
-                        processExistentialRestriction((OWLObjectSomeValuesFrom) type, i.asOWLNamedIndividual(), ax.getAnnotations());
-                    } else if (type instanceof OWLObjectHasValue) {
-                        processExistentialRestriction((OWLObjectSomeValuesFrom) ((OWLObjectHasValue) type).asSomeValuesFrom(), i.asOWLNamedIndividual(), ax.getAnnotations());
-                    }
+            }
+        }
+        for (OWLClassAssertionAxiom eqax : index.getClassAssertionAxioms()) {
+            // INDIVIDUAL-CLASS: Simple existential "individual" restrictions on individuals
+            OWLIndividual i = eqax.getIndividual();
+            if (i.isNamed()) {
+                OWLClassExpression type = eqax.getClassExpression();
+                if (type instanceof OWLObjectSomeValuesFrom) {
+                    processExistentialRestriction((OWLObjectSomeValuesFrom) type, i.asOWLNamedIndividual(), eqax.getAnnotations());
+                } else if (type instanceof OWLObjectHasValue) {
+                    processExistentialRestriction((OWLObjectSomeValuesFrom) ((OWLObjectHasValue) type).asSomeValuesFrom(), i.asOWLNamedIndividual(), eqax.getAnnotations());
                 }
-            } else if (ax instanceof OWLObjectPropertyAssertionAxiom) {
-                // INDIVIDUAL-INDIVIDUAL Object Property Assertion
-                OWLObjectPropertyAssertionAxiom eqax = (OWLObjectPropertyAssertionAxiom) ax;
-                OWLIndividual from = eqax.getSubject();
-                if (from.isNamed()) {
-                    OWLIndividual to = eqax.getObject();
-                    if (to.isNamed()) {
-                        if (!eqax.getProperty().isAnonymous()) {
-                            Optional<N2OEntity> e = manager.getNode(eqax.getProperty().asOWLObjectProperty());
-                            e.ifPresent(n2OEntity -> indexRelation(from.asOWLNamedIndividual(), to.asOWLNamedIndividual(), n2OEntity, ax.getAnnotations()));
-                        }
-                    }
+            }
+        }
+        for (OWLObjectPropertyAssertionAxiom ax : index.getObjectPropertyAssertionAxioms()) {
+            processObjectPropertyAssertion(ax);
+        }
+    }
+
+    private void processObjectPropertyAssertion(OWLObjectPropertyAssertionAxiom eqax) {
+        // INDIVIDUAL-INDIVIDUAL Object Property Assertion
+        OWLIndividual from = eqax.getSubject();
+        if (from.isNamed()) {
+            OWLIndividual to = eqax.getObject();
+            if (to.isNamed()) {
+                if (!eqax.getProperty().isAnonymous()) {
+                    Optional<N2OEntity> e = manager.getNode(eqax.getProperty().asOWLObjectProperty());
+                    e.ifPresent(n2OEntity -> indexRelation(from.asOWLNamedIndividual(), to.asOWLNamedIndividual(), n2OEntity, eqax.getAnnotations()));
                 }
             }
         }
@@ -459,6 +543,160 @@ class N2OOntologyLoader {
     }
 
 
+    /*
+    The node of an entity as computed by a worker thread. The calls that change the state of the import manager are
+    recorded and only replayed when the node is added, so that the result does not depend on the number of threads.
+     */
+    private class ExtractedNode {
+        private final OWLEntity owlEntity;
+        private final N2OEntity entity;
+        private final Map<String, Object> props;
+        private final List<Runnable> deferred = new ArrayList<>();
+
+        ExtractedNode(OWLEntity owlEntity, N2OEntity entity) {
+            this.owlEntity = owlEntity;
+            this.entity = entity;
+            this.props = entity.getNodeBuiltInMetadataAsMap();
+        }
+
+        Optional<String> lookupSLFromAnnotation(OWLAnnotation a) {
+            deferred.add(() -> manager.getSLFromAnnotation(a));
+            return manager.lookupSLFromAnnotation(a);
+        }
+
+        void addNodeLabel(OWLEntity e, String label) {
+            deferred.add(() -> manager.addNodeLabel(e, label));
+        }
+    }
+
+    /*
+    Receives the axioms about streamed individuals. The axioms of one individual are collected until the stream moves
+    on to the next individual, at which point the node of the individual is written to the import manager.
+     */
+    private class ABoxStreamConsumer implements BiConsumer<OWLNamedIndividual, OWLAxiom> {
+        private final N2OStreamingOntologySource source;
+        private final OWLOntology tbox;
+        private final N2OImportResult result;
+        private final Map<OWLClass, Set<String>> dynamicLabelsByType = new HashMap<>();
+        private OWLNamedIndividual current = null;
+        private final Map<String, Set<Object>> propertyAnnotationValueMap = new HashMap<>();
+        private final Set<OWLClass> assertedTypes = new HashSet<>();
+        private final Set<String> labels = new HashSet<>();
+
+        ABoxStreamConsumer(N2OStreamingOntologySource source, OWLOntology tbox, N2OImportResult result) throws N2OException {
+            this.source = source;
+            this.tbox = tbox;
+            this.result = result;
+            // The reasoner does not see the streamed individuals, so dynamic labels are derived from their asserted types.
+            forEachDynamicNodeLabel((ce, label) -> {
+                Set<OWLClass> types = getSubClasses(ce, false);
+                if (ce.isClassExpressionLiteral()) {
+                    types.add(ce.asOWLClass());
+                }
+                types.forEach(c -> dynamicLabelsByType.computeIfAbsent(c, k -> new HashSet<>()).add(label));
+            });
+        }
+
+        @Override
+        public void accept(OWLNamedIndividual i, OWLAxiom ax) {
+            if (!i.equals(current)) {
+                flush();
+                current = i;
+            }
+            if (ax instanceof OWLAnnotationAssertionAxiom) {
+                OWLAnnotationAssertionAxiom a = (OWLAnnotationAssertionAxiom) ax;
+                addPropertyNode(a.getProperty());
+                if (a.getProperty().isLabel() && a.getValue() instanceof OWLLiteral) {
+                    labels.add(((OWLLiteral) a.getValue()).getLiteral());
+                }
+                if (a.getValue().asIRI().isPresent()) {
+                    indexAnnotationToEntity(i, a, iri -> source.isIndividual(iri) ? tbox.getOWLOntologyManager().getOWLDataFactory().getOWLNamedIndividual(iri) : manager.typedEntity(iri, tbox));
+                } else {
+                    extractAnnotationAssertion(i, a, propertyAnnotationValueMap);
+                }
+            } else if (ax instanceof OWLClassAssertionAxiom) {
+                OWLClassExpression type = ((OWLClassAssertionAxiom) ax).getClassExpression();
+                if (type.isClassExpressionLiteral()) {
+                    assertedTypes.add(type.asOWLClass());
+                }
+            } else if (ax instanceof OWLObjectPropertyAssertionAxiom) {
+                processObjectPropertyAssertion((OWLObjectPropertyAssertionAxiom) ax);
+            }
+        }
+
+        void flush() {
+            if (current == null) {
+                return;
+            }
+            Optional<N2OEntity> one = manager.getNode(current);
+            if (one.isPresent()) {
+                N2OEntity ne = one.get();
+                Map<String, Object> existing = manager.getNodeProperties().get(current);
+                if (!labels.isEmpty() || existing == null) {
+                    // not when an individual that was already labelled is described again further down the document
+                    manager.setLabel(ne, labels);
+                }
+                if (existing != null) {
+                    // The individual was seen before (earlier in the stream, or in the TBox): keep its values.
+                    propertyAnnotationValueMap.forEach((k, v) -> {
+                        if (existing.containsKey(k)) {
+                            Object value = existing.get(k);
+                            if (value.toString().contains(N2OStatic.ANNOTATION_DELIMITER)) {
+                                v.addAll(Arrays.asList(value.toString().split(N2OStatic.ANNOTATION_DELIMITER_ESCAPED)));
+                            } else {
+                                v.add(value);
+                            }
+                        }
+                    });
+                }
+                Map<String, Object> props = ne.getNodeBuiltInMetadataAsMap();
+                props.put(N2OStatic.ATT_QUALIFIED_SAFE_LABEL, manager.prepareQSL(ne));
+                convertPropertyAnnotationValueMapToEntityPropertyMap(props, propertyAnnotationValueMap);
+                createNode(ne, props);
+                if (existing == null) {
+                    result.countLoaded(current);
+                }
+                addStreamedClassAssertions(ne);
+            }
+            current = null;
+            propertyAnnotationValueMap.clear();
+            assertedTypes.clear();
+            labels.clear();
+        }
+
+        /*
+        Annotation properties that are only used on individuals are not part of the signature of the TBox.
+         */
+        private void addPropertyNode(OWLAnnotationProperty p) {
+            if (!manager.getNodeProperties().containsKey(p)) {
+                manager.getNode(p).ifPresent(n -> {
+                    Map<String, Object> props = n.getNodeBuiltInMetadataAsMap();
+                    props.put(N2OStatic.ATT_QUALIFIED_SAFE_LABEL, manager.prepareQSL(n));
+                    createNode(n, props);
+                    result.countLoaded(p);
+                });
+            }
+        }
+
+        private void addStreamedClassAssertions(N2OEntity individual) {
+            Set<OWLClass> types = new HashSet<>(assertedTypes);
+            types.removeAll(filterout);
+            Set<OWLClass> directTypes = new HashSet<>(types);
+            for (OWLClass type : types) {
+                directTypes.removeAll(taxonomy.getSuperClasses(type));
+                for (String label : dynamicLabelsByType.getOrDefault(type, Collections.emptySet())) {
+                    manager.addNodeLabel(current, label);
+                }
+            }
+            for (OWLClass type : directTypes) {
+                Map<String, Object> props = new HashMap<>();
+                props.put("id", N2OStatic.RELTYPE_INSTANCEOF);
+                Optional<N2OEntity> n2OEntityType = manager.getNode(type);
+                n2OEntityType.ifPresent(n2OEntity -> updateRelationship(individual, n2OEntity, props));
+            }
+        }
+    }
+
     public N2OImportManager getImportManager() {
         return this.manager;
     }
@@ -0,0 +1,117 @@
+package ebi.spot.neo4j2owl.importer;
+
+import ebi.spot.neo4j2owl.N2OStatic;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+/**
+ * Converts the values of the N2O model to the typed property values the LOAD CSV statements would produce, without
+ * going through Cypher: built-in properties are strings, all others are lists of the datatype of the property (see
+ * RelationTypeCounter), split at the annotation delimiter. Values that do not convert are dropped.
+ */
+class N2OPropertyTypes {
+
+    static final String STRING = "string";
+    static final String LONG = "long";
+    static final String DOUBLE = "double";
+    static final String BOOLEAN = "boolean";
+
+    private static final Pattern ANNOTATION_DELIMITER = Pattern.compile(Pattern.quote(N2OStatic.ANNOTATION_DELIMITER));
+
+    private final Function<String, String> datatypes;
+    private final Map<String, String> types = new HashMap<>();
+
+    /**
+     * @param datatypes the (LOAD CSV) datatype of a property, such as String or Integer
+     */
+    N2OPropertyTypes(Function<String, String> datatypes) {
+        this.datatypes = datatypes;
+    }
+
+    /**
+     * @return the type of the list elements of the property, or null for built-in (plain string) properties
+     */
+    String getType(String property) {
+        if (N2OStatic.isN2OBuiltInProperty(property)) {
+            return null;
+        }
+        return types.computeIfAbsent(property, p -> {
+            switch (datatypes.apply(p)) {
+                case "Integer":
+                case "Long":
+                case "Short":
+                case "Byte":
+                    return LONG;
+                case "Float":
+                case "Double":
+                    return DOUBLE;
+                case "Boolean":
+                    return BOOLEAN;
+                default:
+                    return STRING;
+            }
+        });
+    }
+
+    /**
+     * @return the value as a String for built-in properties, otherwise the list of converted values (possibly empty)
+     */
+    Object toPropertyValue(String property, Object value) {
+        String type = getType(property);
+        if (type == null) {
+            return value.toString();
+        }
+        List<Object> values = new ArrayList<>();
+        for (String v : ANNOTATION_DELIMITER.split(value.toString())) {
+            Object converted = convert(v.trim(), type);
+            if (converted != null) {
+                values.add(converted);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * @return the properties with typed values; empty lists are left out, just like empty cells in LOAD CSV
+     */
+    Map<String, Object> toProperties(Map<String, Object> rec) {
+        Map<String, Object> properties = new HashMap<>();
+        rec.forEach((k, v) -> {
+            Object value = toPropertyValue(k, v);
+            if (!(value instanceof List && ((List) value).isEmpty())) {
+                properties.put(k, value);
+            }
+        });
+        return properties;
+    }
+
+    private static Object convert(String value, String type) {
+        try {
+            switch (type) {
+                case LONG:
+                    try {
+                        return Long.parseLong(value);
+                    } catch (NumberFormatException e) {
+                        // like toInteger(), which truncates decimals
+                        return (long) Double.parseDouble(value);
+                    }
+                case DOUBLE:
+                    return Double.parseDouble(value);
+                case BOOLEAN:
+                    if (value.equalsIgnoreCase("true") || value.equalsIgnoreCase("false")) {
+                        return Boolean.parseBoolean(value);
+                    }
+                    return null;
+                default:
+                    return value;
+            }
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package ebi.spot.neo4j2owl.importer;
+
+import java.util.*;
+
+/**
+ * The relationships of the import model, stored column-wise in primitive arrays: relationship i goes from node
+ * getStart(i) to node getEnd(i) (node ids, see N2OEntity.getId()). Relationship types and property maps are interned,
+ * so that a relationship only takes up four ints; most relationships of a type share the same properties.
+ *
+ * Relationships are never merged: adding the same relationship twice stores it twice, just like the CSV rows.
+ */
+class N2ORelationshipStore {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private int[] starts = new int[INITIAL_CAPACITY];
+    private int[] ends = new int[INITIAL_CAPACITY];
+    private int[] types = new int[INITIAL_CAPACITY];
+    private int[] properties = new int[INITIAL_CAPACITY];
+    private int size = 0;
+
+    private final Map<String, Integer> typeIds = new HashMap<>();
+    private final List<String> typeNames = new ArrayList<>();
+    private final Map<Map<String, Object>, Integer> propertyIds = new HashMap<>();
+    private final List<Map<String, Object>> propertyMaps = new ArrayList<>();
+
+    /**
+     * @param properties the properties of the relationship; the map must not be changed afterwards
+     */
+    void add(int start, int end, String type, Map<String, Object> properties) {
+        if (size == starts.length) {
+            int capacity = starts.length * 2;
+            starts = Arrays.copyOf(starts, capacity);
+            ends = Arrays.copyOf(ends, capacity);
+            types = Arrays.copyOf(types, capacity);
+            this.properties = Arrays.copyOf(this.properties, capacity);
+        }
+        starts[size] = start;
+        ends[size] = end;
+        types[size] = intern(type, typeIds, typeNames);
+        this.properties[size] = intern(properties, propertyIds, propertyMaps);
+        size++;
+    }
+
+    private static <T> int intern(T value, Map<T, Integer> ids, List<T> values) {
+        Integer id = ids.get(value);
+        if (id == null) {
+            id = values.size();
+            ids.put(value, id);
+            values.add(value);
+        }
+        return id;
+    }
+
+    int size() {
+        return size;
+    }
+
+    int getStart(int i) {
+        return starts[i];
+    }
+
+    int getEnd(int i) {
+        return ends[i];
+    }
+
+    String getType(int i) {
+        return typeNames.get(types[i]);
+    }
+
+    Map<String, Object> getProperties(int i) {
+        return propertyMaps.get(properties[i]);
+    }
+
+    /**
+     * @return the relationships (indices) of every type, in the order they were added
+     */
+    Map<String, int[]> indexByType() {
+        int[] counts = new int[typeNames.size()];
+        for (int i = 0; i < size; i++) {
+            counts[types[i]]++;
+        }
+        int[][] byType = new int[typeNames.size()][];
+        for (int t = 0; t < byType.length; t++) {
+            byType[t] = new int[counts[t]];
+            counts[t] = 0;
+        }
+        for (int i = 0; i < size; i++) {
+            int t = types[i];
+            byType[t][counts[t]++] = i;
+        }
+        Map<String, int[]> index = new HashMap<>();
+        for (int t = 0; t < byType.length; t++) {
+            if (byType[t].length > 0) {
+                index.put(typeNames.get(t), byType[t]);
+            }
+        }
+        return index;
+    }
+
+    /**
+     * @return the property keys used by the given relationships
+     */
+    Set<String> getPropertyKeys(int[] relationships) {
+        BitSet seen = new BitSet(propertyMaps.size());
+        Set<String> keys = new HashSet<>();
+        for (int i : relationships) {
+            int p = properties[i];
+            if (!seen.get(p)) {
+                seen.set(p);
+                keys.addAll(propertyMaps.get(p).keySet());
+            }
+        }
+        return keys;
+    }
+}
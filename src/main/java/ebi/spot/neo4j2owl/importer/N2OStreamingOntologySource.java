@@ -0,0 +1,236 @@
+package ebi.spot.neo4j2owl.importer;
+
+import ebi.spot.neo4j2owl.N2OException;
+import ebi.spot.neo4j2owl.N2OLog;
+import org.apache.commons.io.FileUtils;
+import org.openrdf.model.Literal;
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.Value;
+import org.openrdf.rio.RDFFormat;
+import org.openrdf.rio.RDFHandler;
+import org.openrdf.rio.RDFHandlerException;
+import org.openrdf.rio.RDFParseException;
+import org.openrdf.rio.RDFParser;
+import org.openrdf.rio.RDFWriter;
+import org.openrdf.rio.Rio;
+import org.openrdf.rio.helpers.RDFHandlerBase;
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.formats.NTriplesDocumentFormat;
+import org.semanticweb.owlapi.io.FileDocumentSource;
+import org.semanticweb.owlapi.model.*;
+import org.semanticweb.owlapi.model.parameters.Imports;
+import org.semanticweb.owlapi.vocab.Namespaces;
+import org.semanticweb.owlapi.vocab.OWLRDFVocabulary;
+
+import java.io.*;
+import java.util.*;
+import java.util.function.BiConsumer;
+
+/**
+ * Reads an RDF ontology document statement by statement rather than loading it into a single OWLOntology.
+ * Only the TBox (every statement that is not about a named individual) is materialised as an OWLOntology;
+ * statements about named individuals are translated into axioms one at a time and handed to a consumer.
+ *
+ * The document is read three times: once to find the named individuals, once to split off the TBox and once to
+ * stream the assertions (labels included, see N2OImportManager.setLabel). Individuals that are described with blank
+ * nodes (complex class assertions, reified axiom annotations) cannot be translated one statement at a time: like
+ * punned entities, they stay in the TBox.
+ */
+class N2OStreamingOntologySource implements AutoCloseable {
+
+    private static final String RDF_TYPE = OWLRDFVocabulary.RDF_TYPE.getIRI().toString();
+    private static final String OWL_ANNOTATED_SOURCE = OWLRDFVocabulary.OWL_ANNOTATED_SOURCE.getIRI().toString();
+    private static final String OWL_NAMED_INDIVIDUAL = OWLRDFVocabulary.OWL_NAMED_INDIVIDUAL.getIRI().toString();
+    private static final Set<String> NON_INDIVIDUAL_TYPES = new HashSet<>(Arrays.asList(
+            OWLRDFVocabulary.OWL_CLASS.getIRI().toString(),
+            OWLRDFVocabulary.OWL_OBJECT_PROPERTY.getIRI().toString(),
+            OWLRDFVocabulary.OWL_DATA_PROPERTY.getIRI().toString(),
+            OWLRDFVocabulary.OWL_ANNOTATION_PROPERTY.getIRI().toString(),
+            OWLRDFVocabulary.OWL_ONTOLOGY.getIRI().toString()));
+
+    private final N2OLog log = N2OLog.getInstance();
+    private final OWLDataFactory df = OWLManager.getOWLDataFactory();
+    private final IRI documentIRI;
+    private final File document;
+    private final boolean downloaded;
+    private final RDFFormat format;
+    private final Set<String> individuals = new HashSet<>();
+
+    N2OStreamingOntologySource(IRI documentIRI) throws N2OException {
+        this.documentIRI = documentIRI;
+        this.format = Rio.getParserFormatForFileName(documentIRI.toString(), RDFFormat.RDFXML);
+        try {
+            if ("file".equals(documentIRI.getScheme())) {
+                this.document = new File(documentIRI.toURI());
+                this.downloaded = false;
+            } else {
+                this.document = File.createTempFile("n2o_stream_", ".rdf");
+                this.downloaded = true;
+                log.log("Downloading " + documentIRI + " for streaming..");
+                FileUtils.copyURLToFile(documentIRI.toURI().toURL(), document);
+            }
+        } catch (IOException e) {
+            throw new N2OException("Ontology document could not be prepared for streaming: " + documentIRI, e);
+        }
+    }
+
+    /**
+     * @return the TBox of the document, i.e. every statement whose subject is not a named individual.
+     */
+    OWLOntology loadTBox() throws N2OException {
+        collectIndividuals();
+        log.log("Found " + individuals.size() + " named individuals to stream.");
+        File tbox;
+        try {
+            tbox = File.createTempFile("n2o_tbox_", ".nt");
+        } catch (IOException e) {
+            throw new N2OException("Temporary TBox file could not be created..", e);
+        }
+        try {
+            try (OutputStream out = new BufferedOutputStream(new FileOutputStream(tbox))) {
+                RDFWriter writer = Rio.createWriter(RDFFormat.NTRIPLES, out);
+                writer.startRDF();
+                parse(new RDFHandlerBase() {
+                    @Override
+                    public void handleStatement(Statement st) throws RDFHandlerException {
+                        if (!isAboutIndividual(st)) {
+                            writer.handleStatement(st);
+                        }
+                    }
+                });
+                writer.endRDF();
+            } catch (IOException | RDFHandlerException e) {
+                throw new N2OException("Writing TBox of " + documentIRI + " failed..", e);
+            }
+            return OWLManager.createOWLOntologyManager().loadOntologyFromOntologyDocument(new FileDocumentSource(tbox, new NTriplesDocumentFormat()));
+        } catch (OWLOntologyCreationException e) {
+            throw new N2OException("Loading TBox of " + documentIRI + " failed..", e);
+        } finally {
+            FileUtils.deleteQuietly(tbox);
+        }
+    }
+
+    /**
+     * Translates every statement about a named individual into an axiom and passes it on, together with the
+     * individual it is about. Statements about the same individual arrive in document order.
+     *
+     * @param tbox     the TBox returned by loadTBox(), used to tell object, data and annotation properties apart
+     * @param consumer receives the subject individual and the axiom
+     */
+    void streamABox(OWLOntology tbox, BiConsumer<OWLNamedIndividual, OWLAxiom> consumer) throws N2OException {
+        parse(new RDFHandlerBase() {
+            @Override
+            public void handleStatement(Statement st) {
+                if (isAboutIndividual(st)) {
+                    OWLNamedIndividual i = df.getOWLNamedIndividual(IRI.create(st.getSubject().stringValue()));
+                    toAxiom(i, st, tbox).ifPresent(ax -> consumer.accept(i, ax));
+                }
+            }
+        });
+    }
+
+    boolean isIndividual(IRI iri) {
+        return individuals.contains(iri.toString());
+    }
+
+    @Override
+    public void close() {
+        if (downloaded) {
+            FileUtils.deleteQuietly(document);
+        }
+    }
+
+    private void collectIndividuals() throws N2OException {
+        Set<String> tboxEntities = new HashSet<>();
+        parse(new RDFHandlerBase() {
+            @Override
+            public void handleStatement(Statement st) {
+                String p = st.getPredicate().stringValue();
+                Value v = st.getObject();
+                if (p.equals(OWL_ANNOTATED_SOURCE) && v instanceof URI) {
+                    tboxEntities.add(v.stringValue());
+                }
+                if (!(st.getSubject() instanceof URI)) {
+                    return;
+                }
+                String s = st.getSubject().stringValue();
+                if (v instanceof Resource && !(v instanceof URI)) {
+                    tboxEntities.add(s);
+                } else if (p.equals(RDF_TYPE)) {
+                    if (v.stringValue().equals(OWL_NAMED_INDIVIDUAL)) {
+                        individuals.add(s);
+                    } else if (NON_INDIVIDUAL_TYPES.contains(v.stringValue())) {
+                        tboxEntities.add(s);
+                    }
+                }
+            }
+        });
+        // Punned entities and individuals described with blank nodes stay in the TBox, so that none of their axioms
+        // are lost.
+        individuals.removeAll(tboxEntities);
+    }
+
+    private boolean isAboutIndividual(Statement st) {
+        return st.getSubject() instanceof URI && individuals.contains(st.getSubject().stringValue());
+    }
+
+    private Optional<OWLAxiom> toAxiom(OWLNamedIndividual i, Statement st, OWLOntology tbox) {
+        IRI p = IRI.create(st.getPredicate().stringValue());
+        Value v = st.getObject();
+        if (p.toString().equals(RDF_TYPE)) {
+            String type = v.stringValue();
+            if (type.equals(OWL_NAMED_INDIVIDUAL)) {
+                return Optional.of(df.getOWLDeclarationAxiom(i));
+            } else if (isBuiltInVocabulary(type)) {
+                return Optional.empty();
+            }
+            return Optional.of(df.getOWLClassAssertionAxiom(df.getOWLClass(IRI.create(type)), i));
+        }
+        if (v instanceof Literal) {
+            OWLLiteral literal = toOWLLiteral((Literal) v);
+            if (tbox.containsDataPropertyInSignature(p, Imports.INCLUDED)) {
+                return Optional.of(df.getOWLDataPropertyAssertionAxiom(df.getOWLDataProperty(p), i, literal));
+            }
+            return annotationAssertion(p, i, literal);
+        }
+        IRI object = IRI.create(v.stringValue());
+        if (tbox.containsObjectPropertyInSignature(p, Imports.INCLUDED)) {
+            return Optional.of(df.getOWLObjectPropertyAssertionAxiom(df.getOWLObjectProperty(p), i, df.getOWLNamedIndividual(object)));
+        }
+        return annotationAssertion(p, i, object);
+    }
+
+    private Optional<OWLAxiom> annotationAssertion(IRI p, OWLNamedIndividual i, OWLAnnotationValue value) {
+        OWLAnnotationProperty ap = df.getOWLAnnotationProperty(p);
+        if (isBuiltInVocabulary(p.toString()) && !ap.isBuiltIn()) {
+            // owl:sameAs, rdfs:subClassOf and friends on individuals are not annotations
+            return Optional.empty();
+        }
+        return Optional.of(df.getOWLAnnotationAssertionAxiom(ap, i.getIRI(), value));
+    }
+
+    private OWLLiteral toOWLLiteral(Literal l) {
+        if (l.getLanguage() != null) {
+            return df.getOWLLiteral(l.getLabel(), l.getLanguage());
+        } else if (l.getDatatype() == null) {
+            return df.getOWLLiteral(l.getLabel(), "");
+        }
+        return df.getOWLLiteral(l.getLabel(), df.getOWLDatatype(IRI.create(l.getDatatype().stringValue())));
+    }
+
+    private boolean isBuiltInVocabulary(String iri) {
+        return iri.startsWith(Namespaces.OWL.toString()) || iri.startsWith(Namespaces.RDF.toString()) || iri.startsWith(Namespaces.RDFS.toString());
+    }
+
+    private void parse(RDFHandler handler) throws N2OException {
+        RDFParser parser = Rio.createParser(format);
+        parser.setRDFHandler(handler);
+        try (InputStream in = new BufferedInputStream(new FileInputStream(document))) {
+            parser.parse(in, documentIRI.toString());
+        } catch (IOException | RDFParseException | RDFHandlerException e) {
+            throw new N2OException("Streaming " + documentIRI + " failed (streaming requires an RDF serialisation)..", e);
+        }
+    }
+}
@@ -0,0 +1,369 @@
+package ebi.spot.neo4j2owl.importer;
+
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import ebi.spot.neo4j2owl.N2OConfig;
+import ebi.spot.neo4j2owl.N2OException;
+import ebi.spot.neo4j2owl.N2OLog;
+import org.apache.commons.io.FileUtils;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.semanticweb.elk.owlapi.ElkReasonerFactory;
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.model.*;
+import org.semanticweb.owlapi.model.parameters.Imports;
+import org.semanticweb.owlapi.reasoner.OWLReasoner;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+
+/**
+ * The results of classifying an ontology that are needed for the import: the unsatisfiable classes, the direct
+ * subclasses of every class, the direct types of every individual and the subclasses and instances of the class
+ * expressions used for dynamic node labels (neo_node_labelling).
+ *
+ * If taxonomy_cache_dir is configured, the taxonomy is saved to that directory, keyed by a hash of the logical
+ * axioms of the ontology and the dynamic label expressions, and loaded from there as long as neither changes.
+ * If the only logical assertions about individuals are class assertions with named classes (and data property
+ * assertions not used by the TBox), they are left out of the key and the types of the individuals are derived from
+ * the class hierarchy, so that changes to the individuals do not require the ontology to be classified again.
+ */
+class N2OTaxonomy {
+
+    private static final String CACHE_FILE_PREFIX = "taxonomy_";
+
+    private final OWLDataFactory df = OWLManager.getOWLDataFactory();
+    private final Set<OWLClass> unsatisfiable = new HashSet<>();
+    private final Map<OWLClass, Set<OWLClass>> directSubClasses = new HashMap<>();
+    private final Map<OWLClass, Set<OWLClass>> equivalentClasses = new HashMap<>();
+    private final Map<OWLNamedIndividual, Set<OWLClass>> directTypes = new HashMap<>();
+    private final Map<String, Set<OWLClass>> expressionSubClasses = new HashMap<>();
+    private final Map<String, Set<OWLNamedIndividual>> expressionInstances = new HashMap<>();
+    private Map<OWLClass, Set<OWLClass>> directSuperClasses = null;
+
+    private N2OTaxonomy() {
+    }
+
+    /**
+     * @param o           the ontology to be classified
+     * @param index       the axiom index of o
+     * @param expressions the class expressions whose subclasses and instances are needed
+     * @return the taxonomy of o, loaded from the cache if possible
+     */
+    static N2OTaxonomy prepare(OWLOntology o, N2OAxiomIndex index, Collection<OWLClassExpression> expressions) throws N2OException {
+        N2OLog log = N2OLog.getInstance();
+        Optional<String> cacheDir = N2OConfig.getInstance().getTaxonomyCacheDir();
+        if (!cacheDir.isPresent()) {
+            return classify(o, index, expressions, false);
+        }
+        TaxonomyKey key = new TaxonomyKey(o, expressions);
+        File cacheFile = new File(cacheDir.get(), CACHE_FILE_PREFIX + key.hash + ".json");
+        N2OTaxonomy taxonomy = null;
+        if (cacheFile.isFile()) {
+            try {
+                taxonomy = load(cacheFile, key.hash);
+                log.log("Loaded taxonomy from cache: " + cacheFile);
+            } catch (Exception e) {
+                log.warning("Taxonomy cache " + cacheFile + " could not be read, classifying ontology: " + e.getMessage());
+            }
+        }
+        if (taxonomy == null) {
+            taxonomy = classify(o, index, expressions, key.deriveTypes);
+            try {
+                taxonomy.save(cacheFile, key.hash);
+                log.log("Saved taxonomy to cache: " + cacheFile);
+            } catch (IOException e) {
+                log.warning("Taxonomy could not be saved to " + cacheFile + ": " + e.getMessage());
+            }
+        }
+        if (key.deriveTypes) {
+            taxonomy.deriveTypes(index);
+        }
+        return taxonomy;
+    }
+
+    private static N2OTaxonomy classify(OWLOntology o, N2OAxiomIndex index, Collection<OWLClassExpression> expressions, boolean deriveTypes) {
+        N2OLog.getInstance().log("Classifying ontology");
+        N2OTaxonomy taxonomy = new N2OTaxonomy();
+        OWLReasoner r = new ElkReasonerFactory().createReasoner(o);
+        try {
+            taxonomy.unsatisfiable.addAll(r.getUnsatisfiableClasses().getEntities());
+            for (OWLClass c : index.getClasses()) {
+                if (c.isOWLThing() || taxonomy.unsatisfiable.contains(c)) {
+                    continue;
+                }
+                taxonomy.putIfNotEmpty(taxonomy.directSubClasses, c, r.getSubClasses(c, true).getFlattened());
+                Set<OWLClass> equivalents = r.getEquivalentClasses(c).getEntities();
+                if (equivalents.size() > 1) {
+                    taxonomy.equivalentClasses.put(c, new HashSet<>(equivalents));
+                }
+            }
+            for (OWLClassExpression ce : expressions) {
+                Set<OWLClass> subclasses = new HashSet<>(r.getSubClasses(ce, false).getFlattened());
+                subclasses.addAll(r.getEquivalentClasses(ce).getEntities());
+                subclasses.removeAll(taxonomy.unsatisfiable);
+                taxonomy.expressionSubClasses.put(ce.toString(), subclasses);
+            }
+            if (!deriveTypes) {
+                for (OWLNamedIndividual i : index.getIndividuals()) {
+                    taxonomy.directTypes.put(i, new HashSet<>(r.getTypes(i, true).getFlattened()));
+                }
+                for (OWLClassExpression ce : expressions) {
+                    taxonomy.expressionInstances.put(ce.toString(), new HashSet<>(r.getInstances(ce, false).getFlattened()));
+                }
+            }
+        } finally {
+            r.dispose();
+        }
+        return taxonomy;
+    }
+
+    private void putIfNotEmpty(Map<OWLClass, Set<OWLClass>> map, OWLClass c, Set<OWLClass> classes) {
+        Set<OWLClass> filtered = new HashSet<>(classes);
+        filtered.removeAll(unsatisfiable);
+        if (!filtered.isEmpty()) {
+            map.put(c, filtered);
+        }
+    }
+
+    /*
+    Computes the direct types of the individuals, and the instances of the dynamic label expressions, from the
+    asserted (named) types of the individuals and the class hierarchy.
+     */
+    private void deriveTypes(N2OAxiomIndex index) throws N2OException {
+        Map<OWLNamedIndividual, Set<OWLClass>> assertedTypes = new HashMap<>();
+        for (OWLClassAssertionAxiom ax : index.getClassAssertionAxioms()) {
+            OWLClass type = ax.getClassExpression().asOWLClass();
+            if (unsatisfiable.contains(type)) {
+                throw new N2OException("The ontology is inconsistent: " + ax.getIndividual() + " is an instance of the unsatisfiable class " + type + ".");
+            }
+            assertedTypes.computeIfAbsent(ax.getIndividual().asOWLNamedIndividual(), k -> new HashSet<>()).add(type);
+        }
+        for (OWLNamedIndividual i : index.getIndividuals()) {
+            directTypes.put(i, getMostSpecificClasses(assertedTypes.getOrDefault(i, Collections.emptySet())));
+        }
+        for (Map.Entry<String, Set<OWLClass>> e : expressionSubClasses.entrySet()) {
+            Set<OWLNamedIndividual> instances = new HashSet<>();
+            assertedTypes.forEach((i, types) -> {
+                if (!Collections.disjoint(types, e.getValue())) {
+                    instances.add(i);
+                }
+            });
+            expressionInstances.put(e.getKey(), instances);
+        }
+    }
+
+    private Set<OWLClass> getMostSpecificClasses(Set<OWLClass> classes) {
+        Set<OWLClass> candidates = new HashSet<>();
+        for (OWLClass c : classes) {
+            if (!c.isOWLThing()) {
+                candidates.add(c);
+                candidates.addAll(equivalentClasses.getOrDefault(c, Collections.emptySet()));
+            }
+        }
+        Set<OWLClass> mostSpecific = new HashSet<>(candidates);
+        for (OWLClass c : candidates) {
+            mostSpecific.removeAll(getSuperClasses(c));
+        }
+        if (mostSpecific.isEmpty()) {
+            mostSpecific.add(df.getOWLThing());
+        }
+        return mostSpecific;
+    }
+
+    Set<OWLClass> getUnsatisfiableClasses() {
+        return unsatisfiable;
+    }
+
+    /**
+     * @return the direct subclasses of c, and the classes equivalent to c
+     */
+    Set<OWLClass> getDirectSubClasses(OWLClass c) {
+        Set<OWLClass> subclasses = new HashSet<>(directSubClasses.getOrDefault(c, Collections.emptySet()));
+        subclasses.addAll(equivalentClasses.getOrDefault(c, Collections.singleton(c)));
+        return subclasses;
+    }
+
+    /**
+     * @return all subclasses of ce, and the classes equivalent to ce. Only available for the expressions the
+     * taxonomy was prepared with.
+     */
+    Set<OWLClass> getSubClasses(OWLClassExpression ce) {
+        return expressionSubClasses.getOrDefault(ce.toString(), Collections.emptySet());
+    }
+
+    Set<OWLNamedIndividual> getInstances(OWLClassExpression ce) {
+        return expressionInstances.getOrDefault(ce.toString(), Collections.emptySet());
+    }
+
+    Set<OWLClass> getDirectTypes(OWLNamedIndividual i) {
+        return directTypes.getOrDefault(i, Collections.singleton(df.getOWLThing()));
+    }
+
+    /**
+     * @return all strict superclasses of c
+     */
+    Set<OWLClass> getSuperClasses(OWLClass c) {
+        if (directSuperClasses == null) {
+            directSuperClasses = new HashMap<>();
+            directSubClasses.forEach((sup, subs) -> subs.forEach(sub -> directSuperClasses.computeIfAbsent(sub, k -> new HashSet<>()).add(sup)));
+        }
+        Set<OWLClass> superclasses = new HashSet<>();
+        Deque<OWLClass> queue = new ArrayDeque<>(directSuperClasses.getOrDefault(c, Collections.emptySet()));
+        while (!queue.isEmpty()) {
+            OWLClass sup = queue.pop();
+            if (superclasses.add(sup)) {
+                queue.addAll(directSuperClasses.getOrDefault(sup, Collections.emptySet()));
+            }
+        }
+        superclasses.removeAll(equivalentClasses.getOrDefault(c, Collections.emptySet()));
+        superclasses.remove(c);
+        return superclasses;
+    }
+
+    private void save(File file, String key) throws IOException {
+        JSONObject json = new JSONObject();
+        json.put("key", key);
+        json.put("unsatisfiable", toJSON(unsatisfiable));
+        json.put("subclasses", toJSON(directSubClasses));
+        json.put("equivalents", toJSON(equivalentClasses));
+        json.put("types", toJSON(directTypes));
+        JSONObject expressions = new JSONObject();
+        for (String ce : expressionSubClasses.keySet()) {
+            JSONObject expression = new JSONObject();
+            expression.put("subclasses", toJSON(expressionSubClasses.get(ce)));
+            if (expressionInstances.containsKey(ce)) {
+                expression.put("instances", toJSON(expressionInstances.get(ce)));
+            }
+            expressions.put(ce, expression);
+        }
+        json.put("expressions", expressions);
+
+        File tmp = new File(file.getPath() + ".tmp");
+        FileUtils.writeStringToFile(tmp, json.toString(), StandardCharsets.UTF_8);
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static N2OTaxonomy load(File file, String key) throws IOException {
+        JSONObject json = new JSONObject(FileUtils.readFileToString(file, StandardCharsets.UTF_8));
+        if (!key.equals(json.getString("key"))) {
+            throw new IOException("Taxonomy cache key does not match");
+        }
+        N2OTaxonomy taxonomy = new N2OTaxonomy();
+        taxonomy.unsatisfiable.addAll(taxonomy.classesFromJSON(json.getJSONArray("unsatisfiable")));
+        taxonomy.classMapFromJSON(json.getJSONObject("subclasses"), taxonomy.directSubClasses);
+        taxonomy.classMapFromJSON(json.getJSONObject("equivalents"), taxonomy.equivalentClasses);
+        JSONObject types = json.getJSONObject("types");
+        for (String i : types.keySet()) {
+            taxonomy.directTypes.put(taxonomy.df.getOWLNamedIndividual(IRI.create(i)), taxonomy.classesFromJSON(types.getJSONArray(i)));
+        }
+        JSONObject expressions = json.getJSONObject("expressions");
+        for (String ce : expressions.keySet()) {
+            JSONObject expression = expressions.getJSONObject(ce);
+            taxonomy.expressionSubClasses.put(ce, taxonomy.classesFromJSON(expression.getJSONArray("subclasses")));
+            if (expression.has("instances")) {
+                Set<OWLNamedIndividual> instances = new HashSet<>();
+                expression.getJSONArray("instances").forEach(i -> instances.add(taxonomy.df.getOWLNamedIndividual(IRI.create(i.toString()))));
+                taxonomy.expressionInstances.put(ce, instances);
+            }
+        }
+        return taxonomy;
+    }
+
+    private JSONArray toJSON(Set<? extends OWLEntity> entities) {
+        JSONArray array = new JSONArray();
+        entities.forEach(e -> array.put(e.getIRI().toString()));
+        return array;
+    }
+
+    private JSONObject toJSON(Map<? extends OWLEntity, Set<OWLClass>> map) {
+        JSONObject json = new JSONObject();
+        map.forEach((e, classes) -> json.put(e.getIRI().toString(), toJSON(classes)));
+        return json;
+    }
+
+    private Set<OWLClass> classesFromJSON(JSONArray array) {
+        Set<OWLClass> classes = new HashSet<>();
+        array.forEach(c -> classes.add(df.getOWLClass(IRI.create(c.toString()))));
+        return classes;
+    }
+
+    private void classMapFromJSON(JSONObject json, Map<OWLClass, Set<OWLClass>> map) {
+        for (String c : json.keySet()) {
+            map.put(df.getOWLClass(IRI.create(c)), classesFromJSON(json.getJSONArray(c)));
+        }
+    }
+
+    /*
+    An order independent hash of the logical axioms of the ontology (imports included) and the dynamic label
+    expressions. Named class assertions (and data property assertions) only go into the hash if the types of the
+    individuals cannot be derived from the class hierarchy alone.
+     */
+    private static class TaxonomyKey {
+        private final String hash;
+        private final boolean deriveTypes;
+
+        TaxonomyKey(OWLOntology o, Collection<OWLClassExpression> expressions) {
+            long[] tbox = new long[2];
+            long[] classAssertions = new long[2];
+            long[] dataAssertions = new long[2];
+            boolean complexAssertions = false;
+            boolean nominals = false;
+            boolean dataPropertiesInTBox = false;
+            boolean hasDataAssertions = false;
+            for (OWLAxiom ax : o.getAxioms(Imports.INCLUDED)) {
+                if (!ax.isLogicalAxiom()) {
+                    continue;
+                }
+                HashCode h = Hashing.murmur3_128().hashString(ax.getAxiomWithoutAnnotations().toString(), StandardCharsets.UTF_8);
+                if (ax instanceof OWLClassAssertionAxiom && ((OWLClassAssertionAxiom) ax).getClassExpression().isClassExpressionLiteral()
+                        && ((OWLClassAssertionAxiom) ax).getIndividual().isNamed()) {
+                    add(classAssertions, h);
+                } else if (ax instanceof OWLDataPropertyAssertionAxiom && ((OWLDataPropertyAssertionAxiom) ax).getSubject().isNamed()) {
+                    add(dataAssertions, h);
+                    hasDataAssertions = true;
+                } else {
+                    add(tbox, h);
+                    if (AxiomType.ABoxAxiomTypes.contains(ax.getAxiomType())) {
+                        complexAssertions = true;
+                    } else {
+                        for (OWLClassExpression ce : ax.getNestedClassExpressions()) {
+                            if (ce instanceof OWLObjectOneOf || ce instanceof OWLObjectHasValue) {
+                                nominals = true;
+                            }
+                        }
+                        if (!ax.getDataPropertiesInSignature().isEmpty()) {
+                            dataPropertiesInTBox = true;
+                        }
+                    }
+                }
+            }
+            deriveTypes = !complexAssertions && !nominals && !(hasDataAssertions && dataPropertiesInTBox);
+
+            List<String> ces = new ArrayList<>();
+            expressions.forEach(ce -> ces.add(ce.toString()));
+            Collections.sort(ces);
+            StringBuilder sb = new StringBuilder();
+            sb.append(Long.toHexString(tbox[0])).append(Long.toHexString(tbox[1]));
+            if (deriveTypes) {
+                sb.append("derived");
+            } else {
+                sb.append(Long.toHexString(classAssertions[0])).append(Long.toHexString(classAssertions[1]));
+                sb.append(Long.toHexString(dataAssertions[0])).append(Long.toHexString(dataAssertions[1]));
+            }
+            ces.forEach(sb::append);
+            hash = Hashing.sha256().hashString(sb.toString(), StandardCharsets.UTF_8).toString();
+        }
+
+        private static void add(long[] sum, HashCode h) {
+            ByteBuffer b = ByteBuffer.wrap(h.asBytes());
+            sum[0] += b.getLong();
+            sum[1] += b.getLong();
+        }
+    }
+}
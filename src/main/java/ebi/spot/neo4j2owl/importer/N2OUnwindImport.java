@@ -0,0 +1,45 @@
+package ebi.spot.neo4j2owl.importer;
+
+import java.util.Map;
+import java.util.function.IntFunction;
+
+/**
+ * The rows of one node or relationship type, loaded in batches by a single UNWIND $rows statement (or through the
+ * Core API, see N2ONeoCoreAPILoader). Rows are only built when their batch is loaded.
+ */
+class N2OUnwindImport {
+
+    private final String cypherQuery;
+    private final N2OCSVWriter.CSV_TYPE csvType;
+    private final String type;
+    private final int size;
+    private final IntFunction<Map<String, Object>> rows;
+
+    N2OUnwindImport(String cypherQuery, N2OCSVWriter.CSV_TYPE csvType, String type, int size, IntFunction<Map<String, Object>> rows) {
+        this.cypherQuery = cypherQuery;
+        this.csvType = csvType;
+        this.type = type;
+        this.size = size;
+        this.rows = rows;
+    }
+
+    String getCypherQuery() {
+        return cypherQuery;
+    }
+
+    N2OCSVWriter.CSV_TYPE getCsvType() {
+        return csvType;
+    }
+
+    String getType() {
+        return type;
+    }
+
+    int size() {
+        return size;
+    }
+
+    Map<String, Object> getRow(int i) {
+        return rows.apply(i);
+    }
+}
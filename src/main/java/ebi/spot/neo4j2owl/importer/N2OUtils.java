@@ -3,18 +3,15 @@ package ebi.spot.neo4j2owl.importer;
 import ebi.spot.neo4j2owl.N2OConfig;
 import ebi.spot.neo4j2owl.N2OException;
 import ebi.spot.neo4j2owl.N2OStatic;
-import org.apache.commons.io.FileUtils;
 import org.semanticweb.owlapi.apibinding.OWLManager;
 import org.semanticweb.owlapi.dlsyntax.renderer.DLSyntaxObjectRenderer;
 import org.semanticweb.owlapi.model.*;
-import org.semanticweb.owlapi.search.EntitySearcher;
 
 import java.io.File;
-import java.io.IOException;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * @author mh
@@ -26,21 +23,6 @@ public class N2OUtils {
     private static final DLSyntaxObjectRenderer ren = new DLSyntaxObjectRenderer();
 
 
-    static Set<String> getLabels(OWLEntity c, OWLOntology o) {
-        Set<String> labels = new HashSet<>();
-
-        for (OWLAnnotation a : EntitySearcher.getAnnotations(c, o, df.getRDFSLabel())) {
-            OWLAnnotationValue value = a.getValue();
-            if (value instanceof OWLLiteral) {
-                String val = ((OWLLiteral) value).getLiteral();
-                labels.add(val);
-            }
-        }
-
-        return labels;
-    }
-
-
     public static Object extractValueFromOWLAnnotationValue(OWLAnnotationValue aval) {
         if (aval.isLiteral()) {
             OWLLiteral literal = aval.asLiteral().or(df.getOWLLiteral("unknownX"));
@@ -66,17 +48,61 @@ public class N2OUtils {
 
     public static void writeToFile(File dir, Map<String, List<String>> dataout, N2OCSVWriter.CSV_TYPE nodeclass) throws N2OException {
         for (String type : dataout.keySet()) {
-            File f = constructFileHandle(dir, nodeclass.name, type);
-            try {
-                FileUtils.writeLines(f, dataout.get(type));
-            } catch (IOException e) {
-                throw new N2OException("Writing to file "+f+" failed..",e);
+            try (N2OCSVFileWriter csvout = new N2OCSVFileWriter(constructFileHandle(dir, nodeclass.name, type))) {
+                for (String row : dataout.get(type)) {
+                    csvout.writeRow(row);
+                }
             }
         }
     }
 
     static File constructFileHandle(File dir, String nodeclass, String type) {
-        return new File(dir, nodeclass + "_" + type + N2OStatic.CSV_EXTENSION);
+        return new File(dir, nodeclass + "_" + type + getCSVExtension());
+    }
+
+    static File constructFileHandle(File dir, String nodeclass, String type, int shard) {
+        return new File(dir, nodeclass + "_" + type + "." + shard + getCSVExtension());
+    }
+
+    private static String getCSVExtension() {
+        return N2OConfig.getInstance().isCompressCSV() ? N2OStatic.CSV_EXTENSION + N2OStatic.GZIP_EXTENSION : N2OStatic.CSV_EXTENSION;
+    }
+
+    static boolean isCompressed(File f) {
+        return f.getName().endsWith(N2OStatic.GZIP_EXTENSION);
+    }
+
+    /**
+     * @return true if f is one of the (compressed or uncompressed) CSV files written for the import
+     */
+    public static boolean isN2OCSVFile(File f) {
+        String name = f.getName();
+        boolean prefix = false;
+        for (N2OCSVWriter.CSV_TYPE csv_type : N2OCSVWriter.CSV_TYPE.values()) {
+            prefix |= name.startsWith(csv_type.name + "_");
+        }
+        return prefix && (name.endsWith(N2OStatic.CSV_EXTENSION) || name.endsWith(N2OStatic.CSV_EXTENSION + N2OStatic.GZIP_EXTENSION));
+    }
+
+    /**
+     * Drops the tasks that have not started yet and waits for the running ones to finish. The threads are not
+     * interrupted: that does not stop a statement they are running, which would go on writing to the graph after
+     * the import has ended (and its CSV files have been deleted).
+     */
+    public static void stopExecutor(ThreadPoolExecutor executor) {
+        executor.getQueue().clear();
+        executor.shutdown();
+        boolean interrupted = false;
+        while (!executor.isTerminated()) {
+            try {
+                executor.awaitTermination(1, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
     }
 
     public static String render(OWLClassExpression ce) {
@@ -0,0 +1,45 @@
+package ebi.spot.neo4j2owl.importer;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Finds the longest registered namespace an IRI starts with, in time linear in the length of the IRI. Namespaces can
+ * be added while lookups are running.
+ */
+class NamespaceTrie {
+
+    private final Node root = new Node();
+
+    private static class Node {
+        private final Map<Character, Node> children = new ConcurrentHashMap<>();
+        private volatile String namespace = null;
+    }
+
+    void add(String namespace) {
+        Node n = root;
+        for (int i = 0; i < namespace.length(); i++) {
+            n = n.children.computeIfAbsent(namespace.charAt(i), k -> new Node());
+        }
+        n.namespace = namespace;
+    }
+
+    /**
+     * @return the longest non-empty namespace that iri starts with
+     */
+    Optional<String> getLongestNamespace(String iri) {
+        Node n = root;
+        String longest = null;
+        for (int i = 0; i < iri.length(); i++) {
+            n = n.children.get(iri.charAt(i));
+            if (n == null) {
+                break;
+            }
+            if (n.namespace != null) {
+                longest = n.namespace;
+            }
+        }
+        return Optional.ofNullable(longest);
+    }
+}
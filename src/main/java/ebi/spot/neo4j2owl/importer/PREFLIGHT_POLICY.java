@@ -0,0 +1,6 @@
+package ebi.spot.neo4j2owl.importer;
+
+public enum PREFLIGHT_POLICY
+{
+    OFF, WARN, FAIL;
+}
@@ -12,9 +12,9 @@ class RelationTypeCounter {
         this.threshold = threshold;
     }
 
-    private Map<String,Map<String,Integer>> mapCounter = new HashMap<>();
+    private final Map<String,Map<String,Integer>> mapCounter = new HashMap<>();
 
-    void increment(String rel, Object value) {
+    synchronized void increment(String rel, Object value) {
         if(!mapCounter.containsKey(rel)) {
             mapCounter.put(rel,new HashMap<>());
         }
@@ -26,7 +26,7 @@ class RelationTypeCounter {
         ct.put(type,ct.get(type)+1);
     }
 
-    Optional<String> computeTypeForRelation(String rel) {
+    synchronized Optional<String> computeTypeForRelation(String rel) {
         if(mapCounter.containsKey(rel)) {
             Map<String, Integer> ctm = mapCounter.get(rel);
             int sum = ctm.values().stream().mapToInt(Integer::intValue).sum();
@@ -43,7 +43,7 @@ class RelationTypeCounter {
         return Optional.empty();
     }
 
-    String getExplanationForTyping(String rel) {
+    synchronized String getExplanationForTyping(String rel) {
         StringBuilder s = new StringBuilder("Typing report for " + rel + " (threshold " + threshold + "): ");
         if(mapCounter.containsKey(rel)) {
             Map<String, Integer> ctm = mapCounter.get(rel);
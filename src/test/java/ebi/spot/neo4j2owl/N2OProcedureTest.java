@@ -1,27 +1,52 @@
 package ebi.spot.neo4j2owl;
 
 import ebi.spot.neo4j2owl.importer.N2OCSVWriter;
+import ebi.spot.neo4j2owl.importer.N2OImportCSVConfig;
 import ebi.spot.neo4j2owl.importer.N2OImportResult;
 import ebi.spot.neo4j2owl.importer.N2OImportService;
+import ebi.spot.neo4j2owl.importer.N2OUtils;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
 import org.junit.Test;
 import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.PropertyContainer;
+import org.neo4j.graphdb.Relationship;
 import org.neo4j.graphdb.Result;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.graphdb.factory.GraphDatabaseFactory;
+import org.neo4j.graphdb.schema.IndexDefinition;
+import org.neo4j.graphdb.schema.Schema;
 import org.neo4j.kernel.impl.proc.Procedures;
 import org.neo4j.kernel.internal.GraphDatabaseAPI;
 import org.neo4j.internal.kernel.api.exceptions.KernelException;
 import org.neo4j.test.TestGraphDatabaseFactory;
+import org.neo4j.tooling.ImportTool;
 import org.semanticweb.owlapi.apibinding.OWLManager;
 import org.semanticweb.owlapi.model.*;
+import org.yaml.snakeyaml.Yaml;
 
 import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.InputStream;
-import java.net.URI;
+import java.lang.reflect.Array;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
 
 import static org.junit.Assert.*;
 
@@ -45,9 +70,563 @@ public class N2OProcedureTest {
 
     @Test
     public void owl2ImportFromLocal() throws Exception {
-        URI uriOntology = Objects.requireNonNull(getClass().getClassLoader().getResource("smalltest.owl")).toURI();
-        URI uriConfig = Objects.requireNonNull(getClass().getClassLoader().getResource("smalltest-config.yaml")).toURI();
-        runSmallTest(uriOntology.toURL().toString(), uriConfig.toURL().toString());
+        String ontologyUrl = resourceUrl("smalltest.owl");
+        String configUrl = resourceUrl("smalltest-config.yaml");
+        runSmallTest(ontologyUrl, configUrl);
+    }
+
+    @Test
+    public void owl2ImportStreamingFromLocal() throws Exception {
+        String ontologyUrl = resourceUrl("smalltest.owl");
+        String configUrl = configWith("smalltest-config.yaml", "stream_abox", true);
+        runSmallTest(ontologyUrl, configUrl);
+
+
+        // Streamed individuals are not seen by the reasoner: i (which has a complex class assertion, and stays in the
+        // TBox) is not inferred to be an N-Ary_Relation_Pattern from the asserted type of j. Everything else is the
+        // same as when the whole ontology is loaded.
+        String defaultConfigUrl = resourceUrl("smalltest-config.yaml");
+        List<String> streamed = importGraph(ontologyUrl, configUrl);
+        List<String> loaded = importGraph(ontologyUrl, defaultConfigUrl);
+        assertEquals(2, streamed.stream().filter(l -> l.startsWith("node ") && l.contains("Individual")).count());
+        List<String> onlyStreamed = new ArrayList<>(streamed);
+        onlyStreamed.removeAll(loaded);
+        loaded.removeAll(streamed);
+        assertEquals(2, loaded.size());
+        assertTrue(loaded.get(0), loaded.get(0).startsWith("node http://www.semanticweb.org/matentzn/ontologies/2018/1/untitled-ontology-73#i [Entity, Individual, Neuron_adult]"));
+        assertEquals(Collections.singletonList(loaded.get(0).replace(", Neuron_adult]", "]")), onlyStreamed);
+        assertTrue(loaded.get(1), loaded.get(1).startsWith("relationship http://www.semanticweb.org/matentzn/ontologies/2018/1/untitled-ontology-73#i INSTANCEOF http://ontologydesignpatterns.org/wiki/Submissions:N-Ary_Relation_Pattern"));
+    }
+
+    @Test
+    public void owl2ImportStreamingLabelsFromLocal() throws Exception {
+        // Individuals get their labels when the stream reaches them, also when they were referenced before (by the
+        // TBox or by another individual) or are described twice.
+        String ontologyUrl = resourceUrl("streaming.owl");
+        List<String> streamed = importGraph(ontologyUrl, configWith("streaming-config.yaml", "stream_abox", true));
+        List<String> loaded = importGraph(ontologyUrl, resourceUrl("streaming-config.yaml"));
+        List<String> individuals = loaded.stream().filter(l -> l.startsWith("node ") && l.contains("Individual")).collect(Collectors.toList());
+        assertEquals(5, individuals.size());
+        assertEquals(4, individuals.stream().filter(l -> l.contains("label=String:individual ")).count());
+        assertEquals(individuals, streamed.stream().filter(l -> l.startsWith("node ") && l.contains("Individual")).collect(Collectors.toList()));
+        assertEquals(loaded.stream().filter(l -> l.startsWith("relationship ")).count(), streamed.stream().filter(l -> l.startsWith("relationship ")).count());
+        assertEquals(loaded, streamed);
+    }
+
+    @Test
+    public void owl2ImportParallelFromLocal() throws Exception {
+        String ontologyUrl = resourceUrl("smalltest.owl");
+        String configUrl = configWith("smalltest-config.yaml", "extraction_threads", 4);
+        runSmallTest(ontologyUrl, configUrl);
+
+        // The CSV files written with extraction_threads: 4 are the same, byte for byte, as with a single thread.
+        String defaultConfigUrl = resourceUrl("smalltest-config.yaml");
+        File sequential = new File("target/n2o-extraction-sequential");
+        File parallel = new File("target/n2o-extraction-parallel");
+        writeCSVFiles(ontologyUrl, defaultConfigUrl, sequential);
+        writeCSVFiles(ontologyUrl, configUrl, parallel);
+        Set<String> csvFiles = FileUtils.listFiles(sequential, null, false).stream().filter(N2OUtils::isN2OCSVFile).map(File::getName).collect(Collectors.toSet());
+        assertFalse(csvFiles.isEmpty());
+        assertEquals(csvFiles, FileUtils.listFiles(parallel, null, false).stream().filter(N2OUtils::isN2OCSVFile).map(File::getName).collect(Collectors.toSet()));
+        for (String csvFile : csvFiles) {
+            assertTrue(csvFile, FileUtils.contentEquals(new File(sequential, csvFile), new File(parallel, csvFile)));
+        }
+    }
+
+    @Test
+    public void owl2ImportCompressedFromLocal() throws Exception {
+        String ontologyUrl = resourceUrl("smalltest.owl");
+        String configUrl = configWith("smalltest-config.yaml", "compress_csv", true);
+        runSmallTest(ontologyUrl, configUrl);
+
+        // The LOAD CSV statements load .csv.gz files, which hold the same rows as the uncompressed CSV files.
+        String defaultConfigUrl = resourceUrl("smalltest-config.yaml");
+        File uncompressed = new File("target/n2o-uncompressed");
+        File compressed = new File("target/n2o-compressed");
+        writeCSVFiles(ontologyUrl, defaultConfigUrl, uncompressed);
+        List<String> csvFiles = writeCSVFiles(ontologyUrl, configUrl, compressed).getCSVImportConfig().getImportList().stream().map(N2OImportCSVConfig.N2OCSVImport::getCsvFilename).collect(Collectors.toList());
+        assertFalse(csvFiles.isEmpty());
+        for (String csvFile : csvFiles) {
+            assertTrue(csvFile, csvFile.endsWith(".csv.gz"));
+            try (InputStream in = new GZIPInputStream(new FileInputStream(new File(compressed, csvFile)))) {
+                assertEquals(csvFile, FileUtils.readFileToString(new File(uncompressed, csvFile.substring(0, csvFile.length() - ".gz".length())), StandardCharsets.UTF_8), IOUtils.toString(in, StandardCharsets.UTF_8));
+            }
+        }
+        assertTrue(FileUtils.listFiles(compressed, null, false).stream().filter(N2OUtils::isN2OCSVFile).allMatch(f -> f.getName().endsWith(".csv.gz")));
+    }
+
+    @Test
+    public void owl2ImportShardedFromLocal() throws Exception {
+        String ontologyUrl = resourceUrl("smalltest.owl");
+        String configUrl = configWith("smalltest-config.yaml", "csv_shard_size", 3);
+        runSmallTest(ontologyUrl, configUrl);
+
+        // With csv_shard_size: 3, every type is loaded from <type>.1.csv, <type>.2.csv, .. with at most 3 rows each,
+        // which together hold the rows of the unsharded CSV file.
+        String defaultConfigUrl = resourceUrl("smalltest-config.yaml");
+        File unsharded = new File("target/n2o-unsharded");
+        File sharded = new File("target/n2o-sharded");
+        writeCSVFiles(ontologyUrl, defaultConfigUrl, unsharded);
+        List<String> csvFiles = writeCSVFiles(ontologyUrl, configUrl, sharded).getCSVImportConfig().getImportList().stream().map(N2OImportCSVConfig.N2OCSVImport::getCsvFilename).collect(Collectors.toList());
+        Pattern shard = Pattern.compile("(.+)\\.([0-9]+)\\.csv");
+        Map<String, List<String>> shardsByType = new TreeMap<>();
+        for (String csvFile : csvFiles) {
+            Matcher m = shard.matcher(csvFile);
+            assertTrue(csvFile, m.matches());
+            List<String> shards = shardsByType.computeIfAbsent(m.group(1), k -> new ArrayList<>());
+            shards.add(csvFile);
+            assertEquals(csvFile, shards.size(), Integer.parseInt(m.group(2)));
+        }
+        assertTrue(shardsByType.values().stream().anyMatch(shards -> shards.size() > 1));
+        for (Map.Entry<String, List<String>> type : shardsByType.entrySet()) {
+            List<String> rows = new ArrayList<>();
+            for (String csvFile : type.getValue()) {
+                List<String> lines = FileUtils.readLines(new File(sharded, csvFile), StandardCharsets.UTF_8);
+                assertTrue(csvFile, lines.size() - 1 <= 3);
+                rows.addAll(lines.subList(1, lines.size()));
+            }
+            List<String> lines = FileUtils.readLines(new File(unsharded, type.getKey() + ".csv"), StandardCharsets.UTF_8);
+            assertEquals(type.getKey(), lines.subList(1, lines.size()), rows);
+        }
+    }
+
+    @Test
+    public void owl2ImportUnwindFromLocal() throws Exception {
+        // Same nodes and relationships, with the same (typed) property values, as with LOAD CSV.
+        runSmallTestAsDefault(configWith("smalltest-config.yaml", "loading_strategy", "unwind"));
+    }
+
+    @Test
+    public void owl2ImportCoreAPIFromLocal() throws Exception {
+        // Same nodes and relationships, with the same (typed) property values, as with LOAD CSV.
+        runSmallTestAsDefault(configWith("smalltest-config.yaml", "loading_strategy", "core_api"));
+    }
+
+    @Test
+    public void owl2ImportLoadThreadsFromLocal() throws Exception {
+        runSmallTestAsDefault(configWith("smalltest-config.yaml", "load_threads", 4));
+    }
+
+    @Test
+    public void owl2ImportAfterLoadThreadsFromLocal() throws Exception {
+        // The uniqueness constraint on :Entity(iri) created for load_threads: 4 is used by a later import with a
+        // single thread, which would otherwise fail to create its index.
+        String ontologyUrl = resourceUrl("smalltest.owl");
+        String configUrl = resourceUrl("smalltest-config.yaml");
+        String loadThreadsConfigUrl = configWith("smalltest-config.yaml", "load_threads", 4);
+        GraphDatabaseService db = setUpDB();
+        assertEquals("", db.execute(String.format("CALL ebi.spot.neo4j2owl.owl2Import('%s','%s')", ontologyUrl, loadThreadsConfigUrl)).next().get("extraInfo"));
+        Map<String, Object> resMap = db.execute(String.format("CALL ebi.spot.neo4j2owl.owl2Import('%s','%s')", ontologyUrl, configUrl)).next();
+        assertEquals("OK", resMap.get("terminationStatus"));
+        assertEquals("", resMap.get("extraInfo"));
+        List<String> reimported = graph(db);
+        db.shutdown();
+        assertEquals(importGraph(ontologyUrl, configUrl), reimported);
+    }
+
+    @Test
+    public void owl2ImportLoadThreadsAfterIndexFromLocal() throws Exception {
+        // A plain :Entity(iri) index, as left by a single-threaded import, is replaced by the uniqueness constraint
+        // that loading nodes concurrently relies on.
+        String ontologyUrl = resourceUrl("smalltest.owl");
+        String loadThreadsConfigUrl = configWith("smalltest-config.yaml", "load_threads", 4);
+        GraphDatabaseService db = setUpDB();
+        db.execute("CREATE INDEX ON :Entity(iri)").close();
+        Map<String, Object> resMap = db.execute(String.format("CALL ebi.spot.neo4j2owl.owl2Import('%s','%s')", ontologyUrl, loadThreadsConfigUrl)).next();
+        assertEquals("OK", resMap.get("terminationStatus"));
+        assertEquals(0L, db.execute("MATCH (n:Entity) WITH n.iri AS i, count(*) AS c WHERE c > 1 RETURN count(*) AS count").next().get("count"));
+        try (Transaction tx = db.beginTx()) {
+            List<Boolean> constraintIndexes = new ArrayList<>();
+            db.schema().getIndexes(Label.label("Entity")).forEach(index -> constraintIndexes.add(index.isConstraintIndex()));
+            assertEquals(Collections.singletonList(true), constraintIndexes);
+            tx.success();
+        }
+        List<String> loaded = graph(db);
+        db.shutdown();
+        assertEquals(importGraph(ontologyUrl, loadThreadsConfigUrl), loaded);
+    }
+
+    @Test
+    public void owl2ImportLoadThreadsFailingFileFromLocal() throws Exception {
+        String ontologyUrl = resourceUrl("smalltest.owl");
+        String configUrl = configWith("smalltest-config.yaml", "load_threads", 4);
+        GraphDatabaseService db = setUpDB();
+        // A class node that violates a uniqueness constraint makes the class file fail, while the other node files load.
+        db.execute("CREATE (:Class {iri: 'http://purl.obolibrary.org/obo/CL_0017502'})").close();
+        db.execute("CREATE CONSTRAINT ON (n:Class) ASSERT n.iri IS UNIQUE").close();
+        String call = String.format("CALL ebi.spot.neo4j2owl.owl2Import('%s','%s')", ontologyUrl, configUrl);
+        Map<String, Object> result = db.execute(call).next();
+        assertEquals("KO", result.get("terminationStatus"));
+        String error = result.get("extraInfo").toString();
+        assertTrue(error, error.contains("Loading failed for nodes_Class.csv"));
+        assertFalse(error, error.contains("nodes_Individual.csv"));
+        assertTrue((Long) db.execute("MATCH (n:Individual) RETURN count(n) AS count").next().get("count") > 0);
+        db.shutdown();
+    }
+
+    @Test
+    public void owl2ImportPartitionedRelationshipsFromLocal() throws Exception {
+        runSmallTestAsDefault(configWith("smalltest-config.yaml", "load_threads", 4, "relationship_partitions", 4));
+    }
+
+    @Test
+    public void owl2ImportPartitionedPunnedFromLocal() throws Exception {
+        String ontologyUrl = resourceUrl("punning.owl");
+        String configUrl = resourceUrl("punning-config.yaml");
+        String partitionedConfigUrl = configWith("punning-config.yaml", "load_threads", 4, "relationship_partitions", 4);
+        File importdir = new File("target/n2o-partitioned");
+        writeCSVFiles(ontologyUrl, partitionedConfigUrl, importdir);
+
+        // The iris P1 to P4 are both a class and an individual, but a single node: all their relationships are in one partition.
+        Pattern partitionFile = Pattern.compile("relationship_.+\\.(p\\d+)(\\.\\d+)?\\.csv");
+        Map<String, Set<String>> partitionsOfStartNodes = new HashMap<>();
+        for (File f : FileUtils.listFiles(importdir, null, false)) {
+            Matcher m = partitionFile.matcher(f.getName());
+            if (m.matches()) {
+                List<String> rows = FileUtils.readLines(f, "utf-8");
+                for (String row : rows.subList(1, rows.size())) {
+                    String start = row.substring(0, row.lastIndexOf(','));
+                    partitionsOfStartNodes.computeIfAbsent(start.substring(start.lastIndexOf(',') + 1), k -> new HashSet<>()).add(m.group(1));
+                }
+            }
+        }
+        for (int i = 1; i <= 4; i++) {
+            assertEquals(1, partitionsOfStartNodes.get("http://example.org/punning#P" + i).size());
+        }
+        assertEquals(importGraph(ontologyUrl, configUrl), importGraph(ontologyUrl, partitionedConfigUrl));
+    }
+
+    @Test
+    public void owl2ImportSurrogateKeysFromLocal() throws Exception {
+        String ontologyUrl = resourceUrl("smalltest.owl");
+        String configUrl = configWith("smalltest-config.yaml", "surrogate_keys", true);
+        runSmallTest(ontologyUrl, configUrl);
+
+        // The keys and their index are removed once the relationships are loaded: the graph is that of a plain import.
+        GraphDatabaseService db = setUpDB();
+        String call = String.format("CALL ebi.spot.neo4j2owl.owl2Import('%s','%s')", ontologyUrl, configUrl);
+        assertEquals("", db.execute(call).next().get("extraInfo"));
+        assertEquals(0L, db.execute("MATCH (n) WHERE exists(n." + N2OStatic.ATT_SURROGATE_KEY + ") RETURN count(n) AS count").next().get("count"));
+        try (Transaction tx = db.beginTx()) {
+            for (IndexDefinition index : db.schema().getIndexes()) {
+                for (String key : index.getPropertyKeys()) {
+                    assertNotEquals(N2OStatic.ATT_SURROGATE_KEY, key);
+                }
+            }
+            tx.success();
+        }
+        List<String> graph = graph(db);
+        db.shutdown();
+        String defaultConfigUrl = resourceUrl("smalltest-config.yaml");
+        assertEquals(importGraph(ontologyUrl, defaultConfigUrl), graph);
+    }
+
+    @Test
+    public void owl2ImportMultiLabelNodesFromLocal() throws Exception {
+        String ontologyUrl = resourceUrl("smalltest.owl");
+        String configUrl = configWith("smalltest-config.yaml", "multi_label_nodes", true);
+        List<String> graph = runSmallTestAsDefault(configUrl);
+
+        // Every node is written to exactly one row.
+        File importdir = new File("target/n2o-multi-label");
+        writeCSVFiles(ontologyUrl, configUrl, importdir);
+        List<String> iris = new ArrayList<>();
+        for (File f : FileUtils.listFiles(importdir, null, false)) {
+            if (f.getName().startsWith("nodes_multilabel_")) {
+                List<String> rows = FileUtils.readLines(f, "utf-8");
+                int iri = Arrays.asList(rows.get(0).split(",")).indexOf("iri");
+                // split on the commas outside of quoted values
+                rows.subList(1, rows.size()).forEach(row -> iris.add(row.split(",(?=(?:[^\"]*\"[^\"]*\")*[^\"]*$)")[iri]));
+            }
+        }
+        assertEquals(graph.stream().filter(line -> line.startsWith("node ")).count(), iris.size());
+        assertEquals(iris.size(), new HashSet<>(iris).size());
+    }
+
+    @Test
+    public void owl2ImportIndexesFromLocal() throws Exception {
+        String ontologyUrl = resourceUrl("smalltest.owl");
+        String configUrl = configWith("smalltest-config.yaml", "unique_iri", true, "index_timeout", 60, "indexes", Arrays.asList("Class(short_form)", ":Individual(label)"));
+        GraphDatabaseService db = setUpDB();
+        String call = String.format("CALL ebi.spot.neo4j2owl.owl2Import('%s','%s')", ontologyUrl, configUrl);
+        assertEquals("", db.execute(call).next().get("extraInfo"));
+        Set<String> online = new HashSet<>();
+        try (Transaction tx = db.beginTx()) {
+            for (IndexDefinition index : db.schema().getIndexes()) {
+                if (db.schema().getIndexState(index) == Schema.IndexState.ONLINE) {
+                    online.add(index.getLabel().name() + "(" + String.join(",", index.getPropertyKeys()) + ")" + (index.isConstraintIndex() ? " UNIQUE" : ""));
+                }
+            }
+            tx.success();
+        }
+        assertEquals(new HashSet<>(Arrays.asList("Entity(iri) UNIQUE", "Class(short_form)", "Individual(label)")), online);
+        db.shutdown();
+    }
+
+    @Test
+    public void owl2ImportPreflightFromLocal() throws Exception {
+        String ontologyUrl = resourceUrl("smalltest.owl");
+        // The generated statements only seek the iri index, so they pass even without a row threshold.
+        runSmallTest(ontologyUrl, configWith("smalltest-config.yaml", "preflight", "fail", "preflight_min_rows", 0));
+
+        String configUrl = configWith("smalltest-config.yaml", "preflight", "fail", "preflight_min_rows", 0, "preprocessing", Collections.singletonList("MATCH (n:Class) SET n.checked = true"));
+        GraphDatabaseService db = setUpDB();
+        String call = String.format("CALL ebi.spot.neo4j2owl.owl2Import('%s','%s')", ontologyUrl, configUrl);
+        assertTrue(db.execute(call).next().get("extraInfo").toString().contains("NodeByLabelScan"));
+        db.shutdown();
+    }
+
+    @Test
+    public void owl2ImportStatisticsFromLocal() throws Exception {
+        String ontologyUrl = resourceUrl("smalltest.owl");
+        for (String loadingStrategy : Arrays.asList("load_csv", "unwind", "core_api")) {
+            String configUrl = configWith("smalltest-config.yaml", "loading_strategy", loadingStrategy);
+            GraphDatabaseService db = setUpDB();
+            String call = String.format("CALL ebi.spot.neo4j2owl.owl2Import('%s','%s')", ontologyUrl, configUrl);
+            Map<String, Object> resMap = db.execute(call).next();
+            assertEquals(loadingStrategy, "", resMap.get("extraInfo"));
+            assertEquals(loadingStrategy, db.execute("MATCH (n) RETURN count(n) AS count").next().get("count"), resMap.get("nodesCreated"));
+            assertEquals(loadingStrategy, db.execute("MATCH ()-[r]->() RETURN count(r) AS count").next().get("count"), resMap.get("relationshipsCreated"));
+            @SuppressWarnings("unchecked") List<Map<String, Object>> statements = (List<Map<String, Object>>) resMap.get("statements");
+            assertTrue(loadingStrategy, statements.stream().anyMatch(st -> st.get("statement").toString().startsWith("nodes_") && (Long) st.get("rows") > 0));
+            assertTrue(loadingStrategy, statements.stream().allMatch(st -> st.containsKey("seconds") && st.containsKey("rowsPerSecond") && ((Number) st.get("attempts")).intValue() == 1));
+            db.shutdown();
+        }
+    }
+
+    @Test
+    public void owl2ImportAsyncFromLocal() throws Exception {
+        String ontologyUrl = resourceUrl("smalltest.owl");
+        String configUrl = resourceUrl("smalltest-config.yaml");
+        GraphDatabaseService db = setUpDB();
+        String submit = String.format("CALL ebi.spot.neo4j2owl.owl2ImportAsync('%s','%s')", ontologyUrl, configUrl);
+        String jobId = db.execute(submit).next().get("jobId").toString();
+        // Jobs run one at a time, so the second one is still queued and never starts.
+        String cancelledId = db.execute(submit).next().get("jobId").toString();
+        assertEquals("CANCELLED", db.execute("CALL ebi.spot.neo4j2owl.owl2ImportCancel($jobId)", Collections.singletonMap("jobId", cancelledId)).next().get("status"));
+        // A synchronous import is queued behind the running job as well.
+        String call = String.format("CALL ebi.spot.neo4j2owl.owl2Import('%s','%s')", ontologyUrl, configUrl);
+        assertEquals("OK", db.execute(call).next().get("terminationStatus"));
+
+        Map<String, Object> status = db.execute("CALL ebi.spot.neo4j2owl.owl2ImportStatus($jobId)", Collections.singletonMap("jobId", jobId)).next();
+        assertEquals("DONE", status.get("status"));
+        @SuppressWarnings("unchecked") Map<String, Object> result = (Map<String, Object>) status.get("result");
+        assertEquals("", result.get("extraInfo"));
+        assertEquals(16L, result.get("classesLoaded"));
+        assertEquals(db.execute("MATCH (n) RETURN count(n) AS count").next().get("count"), status.get("nodesCreated"));
+        @SuppressWarnings("unchecked") Map<String, Object> phases = (Map<String, Object>) status.get("phases");
+        assertTrue(phases.containsKey("Loading nodes.."));
+        assertEquals("CANCELLED", db.execute("CALL ebi.spot.neo4j2owl.owl2ImportStatus($jobId)", Collections.singletonMap("jobId", cancelledId)).next().get("status"));
+        db.shutdown();
+    }
+
+    @Test
+    public void owl2ImportCancelRunningFromLocal() throws Exception {
+        String ontologyUrl = resourceUrl("smalltest.owl");
+        String configUrl = configWith("smalltest-config.yaml", "preprocessing", Collections.singletonList("UNWIND range(1, 2000000000) AS i MATCH (n:CancelTest) RETURN n"));
+        GraphDatabaseService db = setUpDB();
+        // The preprocessing statement runs for a very long time, unless its transaction is terminated.
+        String submit = String.format("CALL ebi.spot.neo4j2owl.owl2ImportAsync('%s','%s')", ontologyUrl, configUrl);
+        Map<String, Object> jobId = Collections.singletonMap("jobId", db.execute(submit).next().get("jobId"));
+        Map<String, Object> status = db.execute("CALL ebi.spot.neo4j2owl.owl2ImportStatus($jobId)", jobId).next();
+        while ("QUEUED".equals(status.get("status"))) {
+            Thread.sleep(100);
+            status = db.execute("CALL ebi.spot.neo4j2owl.owl2ImportStatus($jobId)", jobId).next();
+        }
+        Thread.sleep(1000);
+        db.execute("CALL ebi.spot.neo4j2owl.owl2ImportCancel($jobId)", jobId).close();
+        long deadline = System.currentTimeMillis() + 60000;
+        while ("RUNNING".equals(status.get("status")) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(200);
+            status = db.execute("CALL ebi.spot.neo4j2owl.owl2ImportStatus($jobId)", jobId).next();
+        }
+        assertEquals("CANCELLED", status.get("status"));
+        assertEquals(0L, db.execute("MATCH (n) RETURN count(n) AS count").next().get("count"));
+        db.shutdown();
+    }
+
+    @Test
+    public void owl2ImportFailingPreprocessingFromLocal() throws Exception {
+        // A failing preprocessing statement fails the import before anything is loaded, also without resume.
+        String ontologyUrl = resourceUrl("smalltest.owl");
+        String configUrl = configWith("smalltest-config.yaml", "preprocessing", Collections.singletonList("RETURN 1/0"));
+        GraphDatabaseService db = setUpDB();
+        String call = String.format("CALL ebi.spot.neo4j2owl.owl2Import('%s','%s')", ontologyUrl, configUrl);
+        Map<String, Object> resMap = db.execute(call).next();
+        assertEquals("KO", resMap.get("terminationStatus"));
+        String error = resMap.get("extraInfo").toString();
+        assertTrue(error, error.contains(N2OStatic.CYPHER_FAILED_TO_EXECUTE + "RETURN 1/0"));
+        assertEquals(0L, db.execute("MATCH (n) RETURN count(n) AS count").next().get("count"));
+        db.shutdown();
+    }
+
+    @Test
+    public void owl2ImportResumeFromLocal() throws Exception {
+        String ontologyUrl = resourceUrl("smalltest.owl");
+        String configUrl = resourceUrl("smalltest-config.yaml");
+        String resumeConfigUrl = configWith("smalltest-config.yaml", "resume", true);
+        GraphDatabaseService db = setUpDB();
+        db.execute(String.format("CALL ebi.spot.neo4j2owl.owl2Import('%s','%s')", ontologyUrl, configUrl)).close();
+        Object nodes = db.execute("MATCH (n) RETURN count(n) AS count").next().get("count");
+        Object relationships = db.execute("MATCH ()-[r]->() RETURN count(r) AS count").next().get("count");
+        db.shutdown();
+
+        // A class node that violates a uniqueness constraint makes the first import fail while loading the classes.
+        db = setUpDB();
+        Map<String, Object> blocker = Collections.singletonMap("iri", "http://purl.obolibrary.org/obo/CL_0017502");
+        db.execute("CREATE (:Class {iri: $iri})", blocker).close();
+        db.execute("CREATE CONSTRAINT ON (n:Class) ASSERT n.iri IS UNIQUE").close();
+        String call = String.format("CALL ebi.spot.neo4j2owl.owl2Import('%s','%s')", ontologyUrl, resumeConfigUrl);
+        Map<String, Object> failed = db.execute(call).next();
+        assertEquals("KO", failed.get("terminationStatus"));
+        db.execute("DROP CONSTRAINT ON (n:Class) ASSERT n.iri IS UNIQUE").close();
+        db.execute("MATCH (n:Class {iri: $iri}) WHERE NOT n:Entity DELETE n", blocker).close();
+
+        // The second import only runs the statements that did not complete.
+        Map<String, Object> resumed = db.execute(call).next();
+        assertEquals("", resumed.get("extraInfo"));
+        assertEquals(16L, resumed.get("classesLoaded"));
+        assertEquals(nodes, db.execute("MATCH (n) RETURN count(n) AS count").next().get("count"));
+        assertEquals(relationships, db.execute("MATCH ()-[r]->() RETURN count(r) AS count").next().get("count"));
+        @SuppressWarnings("unchecked") List<Map<String, Object>> completed = (List<Map<String, Object>>) failed.get("statements");
+        @SuppressWarnings("unchecked") List<Map<String, Object>> loaded = (List<Map<String, Object>>) resumed.get("statements");
+        Set<Object> completedStatements = completed.stream().map(st -> st.get("statement")).collect(Collectors.toSet());
+        assertTrue(loaded.stream().anyMatch(st -> st.get("statement").equals("nodes_Class.csv")));
+        assertTrue(loaded.stream().noneMatch(st -> completedStatements.contains(st.get("statement"))));
+        db.shutdown();
+    }
+
+    @Test
+    public void owl2ImportTaxonomyCacheFromLocal() throws Exception {
+        String ontologyUrl = resourceUrl("smalltest.owl");
+        String configUrl = configWith("smalltest-config.yaml", "taxonomy_cache_dir", "target/n2o-taxonomy-cache");
+        File cacheDir = new File("target/n2o-taxonomy-cache");
+        FileUtils.deleteDirectory(cacheDir);
+        runSmallTest(ontologyUrl, configUrl);
+        File[] cached = cacheDir.listFiles((dir, name) -> name.startsWith("taxonomy_") && name.endsWith(".json"));
+        assertNotNull(cached);
+        assertEquals(1, cached.length);
+
+        // The second import is served from the cached taxonomy, which is therefore not written again, and gives the
+        // same graph as an import that classifies the ontology.
+        assertTrue(cached[0].setLastModified(0));
+        List<String> fromCache = importGraph(ontologyUrl, configUrl);
+        assertEquals(0, cached[0].lastModified());
+        assertEquals(1, Objects.requireNonNull(cacheDir.list()).length);
+        assertEquals(importGraph(ontologyUrl, resourceUrl("smalltest-config.yaml")), fromCache);
+    }
+
+    @Test
+    public void owl2ImportDeltaFromLocal() throws Exception {
+        String ontologyUrl = resourceUrl("smalltest.owl");
+        String configUrl = configWith("smalltest-config.yaml", "delta_manifest", "target/n2o-delta-manifest.json");
+        new File("target/n2o-delta-manifest.json").delete();
+
+        GraphDatabaseService db = setUpDB();
+        String call = String.format("CALL ebi.spot.neo4j2owl.owl2Import('%s','%s')", ontologyUrl, configUrl);
+        assertEquals("", db.execute(call).next().get("extraInfo"));
+        Object nodes = db.execute("MATCH (n) RETURN count(n) AS count").next().get("count");
+        Object relationships = db.execute("MATCH ()-[r]->() RETURN count(r) AS count").next().get("count");
+
+        // Nothing has changed, so the second import must leave the graph as it is.
+        Map<String, Object> resMap = db.execute(call).next();
+        assertEquals(16L, resMap.get("classesLoaded"));
+        assertEquals("", resMap.get("extraInfo"));
+        assertEquals(nodes, db.execute("MATCH (n) RETURN count(n) AS count").next().get("count"));
+        assertEquals(relationships, db.execute("MATCH ()-[r]->() RETURN count(r) AS count").next().get("count"));
+        assertEquals(16L, db.execute("MATCH (n:Class) RETURN count(n) AS count").next().get("count"));
+
+        // The second release removes a class, changes an annotation, takes TESTBOOL1 out of A (and so its
+        // Neuron_adult label and its SUBCLASSOF relationship) and changes the annotation of a has_part relationship.
+        // Loading only the delta on top of the first release gives the same graph as a full import of the second.
+        String release2Url = resourceUrl("smalltest-release2.owl");
+        resMap = db.execute(String.format("CALL ebi.spot.neo4j2owl.owl2Import('%s','%s')", release2Url, configUrl)).next();
+        assertEquals("", resMap.get("extraInfo"));
+        @SuppressWarnings("unchecked") List<Map<String, Object>> statements = (List<Map<String, Object>>) resMap.get("statements");
+        Map<String, Object> deltaRows = new TreeMap<>();
+        statements.stream().filter(st -> st.get("statement").toString().contains("_delta_")).forEach(st -> deltaRows.put(st.get("statement").toString(), st.get("rows")));
+        Map<String, Object> expectedDeltaRows = new TreeMap<>();
+        expectedDeltaRows.put("nodes_delta_removed.csv", 1L);
+        expectedDeltaRows.put("nodes_delta_changed.csv", 2L);
+        expectedDeltaRows.put("nodes_delta_unlabel_Neuron_adult.csv", 1L);
+        expectedDeltaRows.put("relationship_delta_SUBCLASSOF.csv", 1L);
+        expectedDeltaRows.put("relationship_delta_has_part.csv", 1L);
+        assertEquals(expectedDeltaRows, deltaRows);
+        List<String> delta = graph(db);
+        db.shutdown();
+        assertEquals(importGraph(release2Url, resourceUrl("smalltest-config.yaml")), delta);
+    }
+
+    @Test
+    public void owl2ImportNeo4jAdminFromLocal() throws Exception {
+        String ontologyUrl = resourceUrl("smalltest.owl");
+        String configUrl = configWith("smalltest-config.yaml", "neo4j_admin_import", true);
+        File importdir = new File("target/n2o-admin-import");
+        FileUtils.deleteDirectory(importdir);
+        importdir.mkdirs();
+        N2OImportService importService = new N2OImportService();
+        importService.prepareConfig(configUrl, importdir);
+        N2OCSVWriter csvWriter = importService.prepareCSVFilesForImport(ontologyUrl, importdir, new N2OImportResult());
+        csvWriter.exportNeo4jAdminImportCommand(importdir);
+        N2OConfig.resetConfig();
+
+        // Run the options of the generated neo4j-admin command through the import tool.
+        File store = new File(importdir, "graph.db");
+        List<String> args = new ArrayList<>(Arrays.asList("--into", store.getAbsolutePath()));
+        for (String line : FileUtils.readLines(new File(importdir, N2OStatic.NEO4J_ADMIN_IMPORT_SCRIPT), "utf-8")) {
+            line = line.trim();
+            if (line.startsWith("--")) {
+                for (String arg : line.replaceAll(" \\\\$", "").split(" ", 2)) {
+                    args.add(arg.replace("'", ""));
+                }
+            }
+        }
+        ImportTool.main(args.toArray(new String[0]), true);
+
+        GraphDatabaseService db = setUpDB();
+        String call = String.format("CALL ebi.spot.neo4j2owl.owl2Import('%s','%s')", ontologyUrl, resourceUrl("smalltest-config.yaml"));
+        assertEquals("", db.execute(call).next().get("extraInfo"));
+        GraphDatabaseService admin = new GraphDatabaseFactory().newEmbeddedDatabase(store);
+        for (String query : Arrays.asList("MATCH (n) RETURN count(n) AS count", "MATCH ()-[r]->() RETURN count(r) AS count", "MATCH (n:Class) RETURN count(n) AS count")) {
+            assertEquals(db.execute(query).next().get("count"), admin.execute(query).next().get("count"));
+        }
+        assertEquals(16L, admin.execute("MATCH (n:Class:Entity) RETURN count(n) AS count").next().get("count"));
+        admin.shutdown();
+        db.shutdown();
+    }
+
+    private String resourceUrl(String resource) throws Exception {
+        return Objects.requireNonNull(getClass().getClassLoader().getResource(resource)).toURI().toURL().toString();
+    }
+
+    /*
+    Writes the config resource base, with the keys and values of overrides (key1, value1, key2, value2, ..) added or
+    replaced, to a temporary file, and returns its url.
+     */
+    private String configWith(String base, Object... overrides) throws Exception {
+        Map<String, Object> config;
+        try (InputStream in = getClass().getClassLoader().getResourceAsStream(base)) {
+            config = new Yaml().load(in);
+        }
+        for (int i = 0; i < overrides.length; i += 2) {
+            config.put(overrides[i].toString(), overrides[i + 1]);
+        }
+        File file = File.createTempFile("n2o-", "-" + base);
+        file.deleteOnExit();
+        FileUtils.writeStringToFile(file, new Yaml().dump(config), StandardCharsets.UTF_8);
+        return file.toURI().toURL().toString();
+    }
+
+    /*
+    Runs the small test with the config, and checks that the graph is the same as with smalltest-config.yaml, which
+    it returns.
+     */
+    private List<String> runSmallTestAsDefault(String configUrl) throws Exception {
+        String ontologyUrl = resourceUrl("smalltest.owl");
+        runSmallTest(ontologyUrl, configUrl);
+        List<String> graph = importGraph(ontologyUrl, resourceUrl("smalltest-config.yaml"));
+        assertEquals(graph, importGraph(ontologyUrl, configUrl));
+        return graph;
     }
 
     private void runSmallTest(String ontologyUrl, String configUrl) throws KernelException {
@@ -63,6 +642,73 @@ public class N2OProcedureTest {
         db.shutdown();
     }
 
+    /*
+    Imports the ontology into a new database, and returns the graph (see graph).
+     */
+    private List<String> importGraph(String ontologyUrl, String configUrl) throws KernelException {
+        GraphDatabaseService db = setUpDB();
+        String call = String.format("CALL ebi.spot.neo4j2owl.owl2Import('%s','%s')", ontologyUrl, configUrl);
+        assertEquals("", db.execute(call).next().get("extraInfo"));
+        assertEquals(0L, db.execute("MATCH (n:Entity) WITH n.iri AS i, count(*) AS c WHERE c > 1 RETURN count(*) AS count").next().get("count"));
+        List<String> graph = graph(db);
+        db.shutdown();
+        return graph;
+    }
+
+    /*
+    One line for every node (iri, labels and properties) and every relationship (iris of its nodes, type and
+    properties), sorted. Property values are written with their type, so that a string "1" and a number 1 differ.
+     */
+    private List<String> graph(GraphDatabaseService db) {
+        List<String> lines = new ArrayList<>();
+        try (Transaction tx = db.beginTx()) {
+            for (Node n : db.getAllNodes()) {
+                List<String> labels = new ArrayList<>();
+                n.getLabels().forEach(l -> labels.add(l.name()));
+                Collections.sort(labels);
+                lines.add("node " + n.getProperty("iri", "") + " " + labels + " " + properties(n));
+            }
+            for (Relationship r : db.getAllRelationships()) {
+                lines.add("relationship " + r.getStartNode().getProperty("iri", "") + " " + r.getType().name() + " " + r.getEndNode().getProperty("iri", "") + " " + properties(r));
+            }
+            tx.success();
+        }
+        Collections.sort(lines);
+        return lines;
+    }
+
+    private String properties(PropertyContainer container) {
+        Map<String, String> properties = new TreeMap<>();
+        container.getAllProperties().forEach((k, v) -> properties.put(k, typedValue(v)));
+        return properties.toString();
+    }
+
+    private String typedValue(Object value) {
+        if (value.getClass().isArray()) {
+            List<String> values = new ArrayList<>();
+            for (int i = 0; i < Array.getLength(value); i++) {
+                values.add(typedValue(Array.get(value, i)));
+            }
+            return values.toString();
+        }
+        return value.getClass().getSimpleName() + ":" + value;
+    }
+
+    /*
+    Writes the CSV files of the import into importdir, without loading them.
+     */
+    private N2OCSVWriter writeCSVFiles(String ontologyUrl, String configUrl, File importdir) throws Exception {
+        FileUtils.deleteDirectory(importdir);
+        importdir.mkdirs();
+        N2OImportService importService = new N2OImportService();
+        importService.prepareConfig(configUrl, importdir);
+        try {
+            return importService.prepareCSVFilesForImport(ontologyUrl, importdir, new N2OImportResult());
+        } finally {
+            N2OConfig.resetConfig();
+        }
+    }
+
     @Test
     public void owl2ImportAPI() throws Exception {
         File importdir = new File("results");
@@ -103,8 +749,8 @@ public class N2OProcedureTest {
     public void owl2Export() throws Exception {
         //String ontologyUrl = test_resources_web + "smalltest.owl";
         //String configUrl = test_resources_web + "smalltest-config.yaml";
-        String ontologyUrl = Objects.requireNonNull(getClass().getClassLoader().getResource("smalltest.owl")).toURI().toURL().toString();
-        String configUrl = Objects.requireNonNull(getClass().getClassLoader().getResource("smalltest-config.yaml")).toURI().toURL().toString();
+        String ontologyUrl = resourceUrl("smalltest.owl");
+        String configUrl = resourceUrl("smalltest-config.yaml");
 
         GraphDatabaseService db = setUpDB();
         String call = String.format("CALL ebi.spot.neo4j2owl.owl2Import('%s','%s')", ontologyUrl, configUrl);